@@ -34,7 +34,8 @@ dependencies {
     compileOnly("org.projectlombok:lombok:1.18.24")
     annotationProcessor("org.projectlombok:lombok:1.18.24")
     implementation("com.google.code.gson:gson:2.9.1")
-    implementation("it.sauronsoftware.cron4j:cron4j:2.2.5")
+    // 内嵌键值存储
+    implementation("com.h2database:h2-mvstore:2.2.224")
 
     // ktor
     implementation("io.ktor", "ktor-server-netty", ktorVersion)
@@ -42,4 +43,9 @@ dependencies {
     implementation("io.ktor", "ktor-serialization-gson", ktorVersion)
     // api 文档
     implementation("io.bkbn:kompendium-core:3.2.0")
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.9.0")
+}
+tasks.test {
+    useJUnitPlatform()
 }
\ No newline at end of file
@@ -1,10 +1,19 @@
 package com.github.nanoyou.maidnana;
 
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
 import com.github.nanoyou.maidnana.controller.*;
+import com.github.nanoyou.maidnana.dao.AnnouncementDao;
+import com.github.nanoyou.maidnana.dao.OutboxDao;
+import com.github.nanoyou.maidnana.dao.TemplateDao;
 import com.github.nanoyou.maidnana.service.AnnouncementService;
+import com.github.nanoyou.maidnana.service.RoutingService;
+import com.github.nanoyou.maidnana.service.SessionService;
+import com.github.nanoyou.maidnana.util.PermissionCache;
+import com.github.nanoyou.maidnana.util.observer.EventDispatcher;
 import com.github.nanoyou.maidnana.web.MainKt;
 import kotlin.Lazy;
 import kotlin.LazyKt;
+import net.mamoe.mirai.console.command.CommandManager;
 import net.mamoe.mirai.console.permission.*;
 import net.mamoe.mirai.console.plugin.jvm.JavaPlugin;
 import net.mamoe.mirai.console.plugin.jvm.JvmPluginDescriptionBuilder;
@@ -13,7 +22,7 @@ import net.mamoe.mirai.contact.User;
 import net.mamoe.mirai.event.Event;
 import net.mamoe.mirai.event.EventChannel;
 import net.mamoe.mirai.event.GlobalEventChannel;
-import net.mamoe.mirai.event.events.FriendMessageEvent;
+import net.mamoe.mirai.event.events.*;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -38,15 +47,46 @@ public final class MaidNana extends JavaPlugin {
         }
     });
 
+    /**
+     * 权限主体, 好友的群号为 0
+     */
+    public record Permittee(long group, long user) {
+        public PermitteeId toPermitteeId() {
+            if (group == 0) {
+                return new AbstractPermitteeId.ExactUser(user);
+            }
+            return new AbstractPermitteeId.ExactMember(group, user);
+        }
+    }
+
+    // 权限检查结果缓存, 每条消息都要检查权限
+    private final PermissionCache<Permittee> permissionCache = new PermissionCache<>(
+            p -> PermissionService.hasPermission(p.toPermitteeId(), announcementPermission.getValue()),
+            MaidNanaConstant.PERMISSION_CACHE_TTL_MILLIS,
+            MaidNanaConstant.PERMISSION_CACHE_MAX_SIZE
+    );
+
+    // 命令分发, 在 onEnable 中创建
+    private CommandRouter commandRouter = null;
+
+    public CommandRouter getCommandRouter() {
+        return commandRouter;
+    }
+
+    public Permission getAnnouncementPermission() {
+        return announcementPermission.getValue();
+    }
+
+    public PermissionCache<Permittee> getPermissionCache() {
+        return permissionCache;
+    }
+
     // 测试是否用户有权限
     public boolean hasAnnouncementPermission(User user) {
-        PermitteeId pid;
         if (user instanceof Member) {
-            pid = new AbstractPermitteeId.ExactMember(((Member) user).getGroup().getId(), user.getId());
-        } else {
-            pid = new AbstractPermitteeId.ExactUser(user.getId());
+            return permissionCache.test(new Permittee(((Member) user).getGroup().getId(), user.getId()));
         }
-        return PermissionService.hasPermission(pid, announcementPermission.getValue());
+        return permissionCache.test(new Permittee(0, user.getId()));
     }
 
     private MaidNana() {
@@ -59,14 +99,33 @@ public final class MaidNana extends JavaPlugin {
     public void onEnable() {
         initChannels();
         initFiles();
+        SessionService.getInstance().init();
+        RoutingService.getInstance().init();
         AnnouncementService.getInstance().init();
         announcementPermission.getValue();
+        CommandManager.INSTANCE.registerCommand(PermissionCommand.INSTANCE, false);
         // 初始化 Web 服务
         getLogger().info("开启 web 服务");
         new Thread(MainKt::main, "WebThread").start();
         getLogger().info("初始化完成");
     }
 
+    @Override
+    public void onDisable() {
+        CommandManager.INSTANCE.unregisterCommand(PermissionCommand.INSTANCE);
+        // 先执行完已收到的命令, 再关闭它们会用到的服务
+        if (commandRouter != null) {
+            commandRouter.shutdown();
+        }
+        AnnouncementService.getInstance().shutdown();
+        SessionService.getInstance().shutdown();
+        // 合并剩余的日志
+        AnnouncementDao.getInstance().close();
+        TemplateDao.getInstance().close();
+        OutboxDao.getInstance().close();
+        EventDispatcher.shutdown();
+    }
+
     /**
      * 初始化消息频道
      */
@@ -76,6 +135,13 @@ public final class MaidNana extends JavaPlugin {
         var templateController = TemplateController.getInstance();
         var miscController = MiscController.getInstance();
 
+        // 维护群路由表
+        var routing = RoutingService.getInstance();
+        eventChannel.subscribeAlways(BotOnlineEvent.class, e -> routing.addBot(e.getBot()));
+        eventChannel.subscribeAlways(BotOfflineEvent.class, e -> routing.removeBot(e.getBot().getId()));
+        eventChannel.subscribeAlways(BotJoinGroupEvent.class, e -> routing.add(e.getGroup().getId(), e.getBot().getId()));
+        eventChannel.subscribeAlways(BotLeaveEvent.class, e -> routing.remove(e.getGroup().getId(), e.getBot().getId()));
+
         // 过滤出所有有权限用户发的的消息
         EventChannel<Event> channel = eventChannel.filter(evt -> {
             if (!(evt instanceof FriendMessageEvent)) {
@@ -84,33 +150,37 @@ public final class MaidNana extends JavaPlugin {
             return hasAnnouncementPermission(((FriendMessageEvent) evt).getSender());
         });
 
-        // 注册消息
-        channel.subscribeAlways(FriendMessageEvent.class, miscController::usage);
-
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::newAnnouncement);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::selectAnnouncement);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::deleteAnnouncement);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::listAnnouncements);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::setGroupAnnouncement);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::unsetGroupAnnouncement);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::setPlainBody);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::setTemplateBody);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::enableAnnouncement);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::disableAnnouncement);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::newTrigger);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::deleteTrigger);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::preview);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::setVariable);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::unsetVariable);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::showAnnouncement);
-        channel.subscribeAlways(FriendMessageEvent.class, announcementController::manualTrigger);
-
-
-        channel.subscribeAlways(FriendMessageEvent.class, templateController::newTemplate);
-        channel.subscribeAlways(FriendMessageEvent.class, templateController::deleteTemplate);
-        channel.subscribeAlways(FriendMessageEvent.class, templateController::modifyTemplate);
-        channel.subscribeAlways(FriendMessageEvent.class, templateController::showTemplate);
-        channel.subscribeAlways(FriendMessageEvent.class, templateController::listTemplates);
+        // 注册命令
+        commandRouter = new CommandRouter()
+                .registerExact("帮助", miscController::usage)
+                .registerExact("运行状态", miscController::status)
+
+                .register("新建公告", announcementController::newAnnouncement)
+                .register("选择公告", announcementController::selectAnnouncement)
+                .registerExact("删除公告", announcementController::deleteAnnouncement)
+                .register("公告列表", announcementController::listAnnouncements)
+                .register("群公告", announcementController::listGroupAnnouncements)
+                .register("设置群", announcementController::setGroupAnnouncement)
+                .register("取消群", announcementController::unsetGroupAnnouncement)
+                .register("纯文本公告", announcementController::setPlainBody)
+                .register("模板公告", announcementController::setTemplateBody)
+                .registerExact("开启公告", announcementController::enableAnnouncement)
+                .registerExact("禁用公告", announcementController::disableAnnouncement)
+                .register("新建触发器", announcementController::newTrigger)
+                .register("删除触发器", announcementController::deleteTrigger)
+                .registerExact("预览", announcementController::preview)
+                .register("设置变量", announcementController::setVariable)
+                .register("取消变量", announcementController::unsetVariable)
+                .registerExact("查看公告", announcementController::showAnnouncement)
+                .registerExact("发送公告", announcementController::manualTrigger)
+
+                .register("新建模板", templateController::newTemplate)
+                .register("删除模板", templateController::deleteTemplate)
+                .register("修改模板", templateController::modifyTemplate)
+                .register("查看模板", templateController::showTemplate)
+                .registerExact("模板列表", templateController::listTemplates);
+        // 每条消息只分发一次
+        channel.subscribeAlways(FriendMessageEvent.class, commandRouter::dispatch);
     }
 
     // 初始化文件
@@ -3,4 +3,58 @@ package com.github.nanoyou.maidnana.constant;
 public class MaidNanaConstant {
     public static final String VERSION = "1.0.0-alpha";
     public static final int WEB_PORT = 5277;
+    // 存储引擎, json 为每种实体一个 JSON 文件, mvstore 为每种实体一个内嵌键值库文件(.mv.db); 切换到 mvstore 时自动迁移已有的 JSON 文件
+    public static final String STORAGE_ENGINE = "json";
+    // 是否使用追加写日志保存数据(仅 json 引擎), 关闭后每次修改都会重写整个数据文件
+    public static final boolean JOURNAL_ENABLED = true;
+    // 日志记录数达到该值时立即合并进数据文件
+    public static final int JOURNAL_COMPACT_THRESHOLD = 1000;
+    // 后台合并日志的间隔(秒)
+    public static final long JOURNAL_COMPACT_INTERVAL_SECONDS = 600;
+    // 是否延迟写入, 开启后修改先缓存在内存中, 由后台线程合并写入
+    public static final boolean WRITE_BEHIND_ENABLED = false;
+    // 延迟写入的最长间隔(毫秒), 即崩溃时最多丢失的修改时长
+    public static final long WRITE_BEHIND_FLUSH_INTERVAL_MILLIS = 1000;
+    // 脏数据达到该条数时立即写入
+    public static final int WRITE_BEHIND_MAX_DIRTY = 100;
+    // 同时发送的消息数
+    public static final int DELIVERY_PARALLELISM = 8;
+    // 每个机器人每秒最多发送的消息数
+    public static final double OUTBOUND_RATE_PER_SECOND = 2;
+    // 每个机器人空闲后最多连续发送的消息数
+    public static final int OUTBOUND_BURST = 5;
+    // 公告发送失败多少次后放弃, 移入死信
+    public static final int OUTBOX_MAX_ATTEMPTS = 5;
+    // 第一次重试的等待时间(秒), 之后每次翻倍
+    public static final long OUTBOX_RETRY_BASE_SECONDS = 5;
+    // 重试的最长等待时间(秒)
+    public static final long OUTBOX_RETRY_MAX_SECONDS = 600;
+    // 未发送的公告最多保留多久(小时), 如机器人一直离线
+    public static final long OUTBOX_MAX_AGE_HOURS = 24;
+    // 最多保留的死信数
+    public static final int OUTBOX_DEAD_MAX_SIZE = 1000;
+    // 死信保留多久(天)
+    public static final long OUTBOX_DEAD_MAX_AGE_DAYS = 7;
+    // 渲染结果缓存的最大条目数
+    public static final int RENDER_CACHE_MAX_ENTRIES = 1024;
+    // 渲染结果缓存的文本总长度上限(字符)
+    public static final long RENDER_CACHE_MAX_CHARS = 1024 * 1024;
+    // 权限检查结果的有效期(毫秒), 通过 /perm 修改权限后最晚在该时间后生效
+    public static final long PERMISSION_CACHE_TTL_MILLIS = 60 * 1000;
+    // 最多缓存的权限检查结果数
+    public static final int PERMISSION_CACHE_MAX_SIZE = 4096;
+    // 会话闲置多久后移除(分钟)
+    public static final long SESSION_IDLE_TTL_MINUTES = 7 * 24 * 60;
+    // 最多保存的会话数
+    public static final int SESSION_MAX_SIZE = 1024;
+    // 会话有修改时写入磁盘的间隔(秒)
+    public static final long SESSION_SAVE_INTERVAL_SECONDS = 30;
+    // 同时执行命令的线程数, 同一用户的命令总是按顺序执行
+    public static final int COMMAND_PARALLELISM = 4;
+    // 单条回复消息的最大字符数, 列表等长回复会按该长度合并为多条消息
+    public static final int MESSAGE_MAX_CHARS = 3000;
+    // 公告列表每页的公告数
+    public static final int LIST_PAGE_SIZE = 10;
+    // 简略模式下公告列表每页的公告数
+    public static final int LIST_PAGE_SIZE_BRIEF = 50;
 }
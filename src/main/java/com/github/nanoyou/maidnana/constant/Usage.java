@@ -3,15 +3,17 @@ package com.github.nanoyou.maidnana.constant;
 public class Usage {
     // MiscController
     public static final String HELP = "帮助 - 查看帮助列表";
+    public static final String STATUS = "运行状态 - 查看缓存命中等运行状态";
     // AnnouncementController
     public static final String NEW_ANNOUNCEMENT = "新建公告 [公告别名] - 新建公告并自动选择, 可指定别名便于记忆";
     public static final String SELECT_ANNOUNCEMENT = "选择公告 <公告UUID | 公告别名> - 为后续命令指定公告";
     public static final String DELETE_ANNOUNCEMENT = "删除公告 - 删除公告*";
-    public static final String LIST_ANNOUNCEMENTS = "公告列表 - 查看公告列表";
+    public static final String LIST_ANNOUNCEMENTS = "公告列表 [页码] [简略] - 分页查看公告列表, 简略模式每条公告只显示一行";
+    public static final String LIST_GROUP_ANNOUNCEMENTS = "群公告 <群号> - 查看发送到指定群的公告";
     public static final String SET_GROUP = "设置群 <群号1> [群号2]... - 设置公告发送的群, 可设置多个*";
     public static final String UNSET_GROUP = "取消群 <群号1> [群号2]... - 取消设置公告发送的群, 可取消多个*";
     public static final String SET_PLAIN_BODY = "纯文本公告\n<公告体(多行)> - 设置纯文本公告体, 若已存在则覆盖*";
-    public static final String SET_TEMPLATE_BODY = "模板公告 <模板UUID | 模板别名>\n变量1=值1\n变量2=值2\n... - 设置模板公告体, 若已存在则覆盖*";
+    public static final String SET_TEMPLATE_BODY = "模板公告 [模板UUID | 模板别名]\n变量1=值1\n变量2=值2\n... - 设置模板公告体, 若已存在则覆盖, 不指定模板时使用最近新建、修改或查看的模板*";
     public static final String ENABLE_ANNOUNCEMENT = "开启公告 - 开启定时公告的发布*";
     public static final String DISABLE_ANNOUNCEMENT = "禁用公告 - 暂停定时公告的发布*";
     public static final String NEW_TRIGGER = "新建触发器 <cron表达式> - 新建触发器*";
@@ -32,10 +34,12 @@ public class Usage {
             + MaidNanaConstant.VERSION
             + "\n命令列表如下, [] 代表可选参数, <> 代表必选参数, ...代表多个参数, * 表示需要先进行公告选择, - 后为使用说明\n"
             + HELP + "\n"
+            + STATUS + "\n"
             + NEW_ANNOUNCEMENT + "\n"
             + SELECT_ANNOUNCEMENT + "\n"
             + DELETE_ANNOUNCEMENT  + "\n"
             + LIST_ANNOUNCEMENTS + "\n"
+            + LIST_GROUP_ANNOUNCEMENTS + "\n"
             + SET_GROUP + "\n"
             + UNSET_GROUP + "\n"
             + SET_PLAIN_BODY + "\n"
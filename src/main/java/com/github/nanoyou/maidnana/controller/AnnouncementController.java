@@ -1,5 +1,6 @@
 package com.github.nanoyou.maidnana.controller;
 
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
 import com.github.nanoyou.maidnana.constant.Usage;
 import com.github.nanoyou.maidnana.entity.Announcement;
 import com.github.nanoyou.maidnana.entity.Body;
@@ -7,10 +8,10 @@ import com.github.nanoyou.maidnana.entity.PlainBody;
 import com.github.nanoyou.maidnana.entity.Template;
 import com.github.nanoyou.maidnana.entity.*;
 import com.github.nanoyou.maidnana.service.AnnouncementService;
+import com.github.nanoyou.maidnana.service.SessionService;
 import com.github.nanoyou.maidnana.service.TemplateService;
-import it.sauronsoftware.cron4j.InvalidPatternException;
-import it.sauronsoftware.cron4j.SchedulingPattern;
-import net.mamoe.mirai.event.events.FriendMessageEvent;
+import com.github.nanoyou.maidnana.util.MaidNanaUtil;
+import com.github.nanoyou.maidnana.util.scheduler.CronExpression;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -18,8 +19,6 @@ import java.util.stream.Collectors;
 public class AnnouncementController {
     private static final AnnouncementController instance = new AnnouncementController();
 
-    private final Map<Long, UUID> selectedAnnouncement = new HashMap<>();
-
     public static AnnouncementController getInstance() {
         return instance;
     }
@@ -119,24 +118,24 @@ public class AnnouncementController {
      * 获取该用户选择的公告, 若未选择或公告失效(已删除)会自动回复消息, 直接 return 即可<br />
      * 例:<br />
      * ...<br />
-     * var announcement = getSelectedAnnouncement(event);<br />
+     * var announcement = getSelectedAnnouncement(command);<br />
      * if (announcement.isEmpty()) {<br />
      * &nbsp;&nbsp;&nbsp;&nbsp;return;<br />
      * }<br />
      * ...
      *
-     * @param event 事件
+     * @param command 命令
      * @return 如果获取到返回公告, 已失效/未选择返回空
      */
-    private Optional<Announcement> getSelectedAnnouncement(FriendMessageEvent event) {
-        var ann = selectedAnnouncement.get(event.getSender().getId());
+    private Optional<Announcement> getSelectedAnnouncement(Command command) {
+        var ann = SessionService.getInstance().getSelectedAnnouncement(command.getSender().getId()).orElse(null);
         if (ann == null) {
-            event.getSender().sendMessage("请先选择公告, 用法:\n" + Usage.SELECT_ANNOUNCEMENT);
+            command.reply("请先选择公告, 用法:\n" + Usage.SELECT_ANNOUNCEMENT);
             return Optional.empty();
         }
         var optAnn = AnnouncementService.getInstance().get(ann);
         if (optAnn.isEmpty()) {
-            event.getSender().sendMessage("公告已被删除, 请重新选择, 用法:\n" + Usage.SELECT_ANNOUNCEMENT);
+            command.reply("公告已被删除, 请重新选择, 用法:\n" + Usage.SELECT_ANNOUNCEMENT);
         }
         return optAnn;
     }
@@ -144,139 +143,195 @@ public class AnnouncementController {
     /**
      * 新建一个公告
      *
-     * @param event 好友信息事件
+     * @param command 命令
      */
-    public void newAnnouncement(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("新建公告")) {
-            return;
-        }
-
-        var line = event.getMessage().contentToString().split(" ");
-
-        if (line.length < 1) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.NEW_ANNOUNCEMENT);
-            return;
-        }
+    public void newAnnouncement(Command command) {
+        var args = command.getArgList();
 
         Announcement a;
-        if (line.length == 1) {
-            a = AnnouncementService.getInstance().create();
-            event.getSender().sendMessage("新建了一个公告\nUUID=" + a.getUuid());
+        if (args.isEmpty()) {
+            a = AnnouncementService.getInstance().create(true);
+            command.reply("新建了一个公告\nUUID=" + a.getUuid());
         } else {
-            var optAnn = AnnouncementService.getInstance().create(line[1]);
+            var optAnn = AnnouncementService.getInstance().create(args.get(0), true);
             if (optAnn.isEmpty()) {
-                event.getSender().sendMessage("公告别名已存在");
-                return;
-            }
-            if ("".equals(line[1])) {
-                event.getSender().sendMessage("别名不能为空");
+                command.reply("公告别名已存在");
                 return;
             }
             a = optAnn.get();
-            event.getSender().sendMessage("新建了一个公告\nUUID=" + a.getUuid() + "\n别名为“" + a.getAlias() + "”");
+            command.reply("新建了一个公告\nUUID=" + a.getUuid() + "\n别名为“" + a.getAlias() + "”");
         }
 
-        AnnouncementService.getInstance().enable(a.getUuid());
-        selectedAnnouncement.put(event.getSender().getId(), a.getUuid());
+        SessionService.getInstance().selectAnnouncement(command.getSender().getId(), a.getUuid());
 
     }
 
     /**
      * 选择已有公告
      *
-     * @param event 好友信息事件
+     * @param command 命令
      */
-    public void selectAnnouncement(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("选择公告")) {
-            return;
-        }
-        String[] line = event.getMessage().contentToString().split(" ");
-        if (line.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.SELECT_ANNOUNCEMENT);
+    public void selectAnnouncement(Command command) {
+        var args = command.getArgList();
+        if (args.isEmpty()) {
+            command.reply("命令格式错误, 用法:\n" + Usage.SELECT_ANNOUNCEMENT);
             return;
         }
-        getAnnouncement(line[1]).ifPresentOrElse(
+        getAnnouncement(args.get(0)).ifPresentOrElse(
                 a -> {
-                    selectedAnnouncement.put(event.getSender().getId(), a.getUuid());
+                    SessionService.getInstance().selectAnnouncement(command.getSender().getId(), a.getUuid());
                     if (a.getAlias() != null) {
-                        event.getSender().sendMessage("选择公告: " + a.getAlias() + "(" + a.getUuid().toString() + ")");
+                        command.reply("选择公告: " + a.getAlias() + "(" + a.getUuid().toString() + ")");
                     } else {
-                        event.getSender().sendMessage("选择公告: " + a.getUuid().toString());
+                        command.reply("选择公告: " + a.getUuid().toString());
                     }
                 },
-                () -> event.getSender().sendMessage("未找到公告")
+                () -> command.reply("未找到公告")
         );
     }
 
     /**
      * 删除指定的公告。此方法会遍历所有选中的公告。
      *
-     * @param event 好友信息事件
+     * @param command 命令
      */
-    public void deleteAnnouncement(FriendMessageEvent event) {
-
-        if (!event.getMessage().contentToString().trim().equals("删除公告")) {
-            return;
-        }
-
-        var optAnn = getSelectedAnnouncement(event);
+    public void deleteAnnouncement(Command command) {
+        var optAnn = getSelectedAnnouncement(command);
         if (optAnn.isEmpty()) {
             return;
         }
 
         AnnouncementService.getInstance().delete(optAnn.get().getUuid());
 
-        event.getSender().sendMessage("已删除选定公告");
+        command.reply("已删除选定公告");
     }
 
     /**
-     * 查看公告列表
+     * 将公告格式化为一行: 名称 启用 群数 触发器数 公告体类型
      *
-     * @param event 好友信息事件
+     * @param announcement 公告
+     * @return 格式化后的文本
      */
-    public void listAnnouncements(FriendMessageEvent event) {
-
-        if (!event.getMessage().contentToString().trim().equals("公告列表")) {
-            return;
+    private String formatAnnouncementBrief(Announcement announcement) {
+        var sb = new StringBuilder();
+        if (announcement.getAlias() == null) {
+            sb.append(announcement.getUuid());
+        } else {
+            sb.append(announcement.getAlias()).append('(').append(announcement.getUuid()).append(')');
+        }
+        sb.append(' ').append(announcement.isEnabled() ? "✔" : "✖");
+        sb.append(" 群:").append(announcement.getGroups().size());
+        sb.append(" 触发器:").append(announcement.getTriggers().size());
+        if (announcement.getBody() == null) {
+            sb.append(" [未设置]");
+        } else if (announcement.getBody() instanceof PlainBody) {
+            sb.append(" [纯文本]");
+        } else {
+            sb.append(" [模板]");
         }
+        return sb.toString();
+    }
 
-        var la = AnnouncementService.getInstance().getAll();
+    /**
+     * 查看公告列表<br />
+     * 按页显示, 每页的内容合并为尽量少的消息
+     *
+     * @param command 命令
+     */
+    public void listAnnouncements(Command command) {
+        var page = 1;
+        var brief = false;
+        for (var arg : command.getArgList()) {
+            if (arg.equals("简略")) {
+                brief = true;
+                continue;
+            }
+            try {
+                page = Integer.parseInt(arg);
+            } catch (NumberFormatException e) {
+                command.reply("命令格式错误, 用法:\n" + Usage.LIST_ANNOUNCEMENTS);
+                return;
+            }
+        }
 
-        event.getSender().sendMessage("共有 " + la.size() + " 条公告");
-        la.forEach(ann -> event.getSender().sendMessage(formatAnnouncement(ann)));
+        // 按别名与 UUID 排序, 保证分页稳定
+        var la = new ArrayList<>(AnnouncementService.getInstance().getAll());
+        la.sort(Comparator.comparing(Announcement::getAlias, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Announcement::getUuid));
 
+        var compact = brief;
+        var pageSize = compact ? MaidNanaConstant.LIST_PAGE_SIZE_BRIEF : MaidNanaConstant.LIST_PAGE_SIZE;
+        var pages = Math.max(1, (la.size() + pageSize - 1) / pageSize);
+        if (page < 1 || page > pages) {
+            command.reply("页码超出范围, 共 " + pages + " 页");
+            return;
+        }
+        var from = (page - 1) * pageSize;
+        var parts = new ArrayList<String>();
+        parts.add("共有 " + la.size() + " 条公告, 第 " + page + "/" + pages + " 页");
+        la.subList(from, Math.min(from + pageSize, la.size()))
+                .forEach(ann -> parts.add(compact ? formatAnnouncementBrief(ann) : formatAnnouncement(ann)));
+        MaidNanaUtil.chunk(parts, compact ? "\n" : "\n\n", MaidNanaConstant.MESSAGE_MAX_CHARS).forEach(command::reply);
     }
 
     /**
-     * 设置指定群为公告接收方
+     * 查看发送到指定群的公告, 每条公告显示一行
      *
-     * @param event 好友信息事件
+     * @param command 命令
      */
-    public void setGroupAnnouncement(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("设置群")) {
+    public void listGroupAnnouncements(Command command) {
+        var args = command.getArgList();
+        if (args.size() != 1) {
+            command.reply("命令格式错误, 用法:\n" + Usage.LIST_GROUP_ANNOUNCEMENTS);
             return;
         }
-        String[] line = event.getMessage().contentToString().split(" ");
-        if (line.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.SET_GROUP);
+        long groupID;
+        try {
+            groupID = Long.parseLong(args.get(0));
+        } catch (NumberFormatException e) {
+            command.reply("命令解析失败：\n“" + args.get(0) + "”不是一个正确的群号");
+            return;
+        }
+        var la = new ArrayList<>(AnnouncementService.getInstance().getByGroup(groupID));
+        if (la.isEmpty()) {
+            command.reply("没有发送到群 " + groupID + " 的公告");
+            return;
+        }
+        la.sort(Comparator.comparing(Announcement::getAlias, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Announcement::getUuid));
+        var parts = new ArrayList<String>();
+        parts.add("群 " + groupID + " 共有 " + la.size() + " 条公告");
+        la.forEach(ann -> parts.add(formatAnnouncementBrief(ann)));
+        MaidNanaUtil.chunk(parts, "\n", MaidNanaConstant.MESSAGE_MAX_CHARS).forEach(command::reply);
+    }
+
+    /**
+     * 设置指定群为公告接收方
+     *
+     * @param command 命令
+     */
+    public void setGroupAnnouncement(Command command) {
+        var args = command.getArgList();
+        if (args.isEmpty()) {
+            command.reply("命令格式错误, 用法:\n" + Usage.SET_GROUP);
             return;
         }
 
         List<Long> groupIds = new ArrayList<>();
 
         try {
-            for (int i = 1; i < line.length; i++) {
-                groupIds.add(Long.valueOf(line[i]));
+            for (var arg : args) {
+                groupIds.add(Long.valueOf(arg));
             }
         } catch (Exception e) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.SET_GROUP);
+            command.reply("命令格式错误, 用法:\n" + Usage.SET_GROUP);
             return;
         }
 
-        getSelectedAnnouncement(event).ifPresent(
+        getSelectedAnnouncement(command).ifPresent(
                 a -> {
-                    groupIds.forEach(groupId -> AnnouncementService.getInstance().addGroup(a.getUuid(), groupId));
-                    event.getSender().sendMessage("设置群成功");
+                    AnnouncementService.getInstance().addGroups(a.getUuid(), groupIds);
+                    command.reply("设置群成功");
                 }
         );
     }
@@ -284,62 +339,60 @@ public class AnnouncementController {
     /**
      * 取消指定群为公告接收方
      *
-     * @param event 好友信息事件
+     * @param command 命令
      */
-    public void unsetGroupAnnouncement(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("取消群")) {
-            return;
-        }
-        String[] line = event.getMessage().contentToString().split(" ");
-        if (line.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.UNSET_GROUP);
+    public void unsetGroupAnnouncement(Command command) {
+        var args = command.getArgList();
+        if (args.isEmpty()) {
+            command.reply("命令格式错误, 用法:\n" + Usage.UNSET_GROUP);
             return;
         }
 
         List<Long> groupIds = new ArrayList<>();
 
-        int i = 1;
+        int i = 0;
         try {
-            for (; i < line.length; i++) {
-                groupIds.add(Long.valueOf(line[i]));
+            for (; i < args.size(); i++) {
+                groupIds.add(Long.valueOf(args.get(i)));
             }
         } catch (Exception e) {
-            event.getSender().sendMessage("命令解析失败：\n“" + line[i] + "”不是一个正确的群号");
+            command.reply("命令解析失败：\n“" + args.get(i) + "”不是一个正确的群号");
             return;
         }
 
-        getSelectedAnnouncement(event).ifPresent(
-                a -> groupIds.forEach(groupId -> AnnouncementService.getInstance().removeGroup(a.getUuid(), groupId).ifPresentOrElse(
-                        ann -> event.getSender().sendMessage("取消群 " + groupId + " 成功"),
-                        () -> event.getSender().sendMessage("未找到群 " + groupId)
-                ))
+        getSelectedAnnouncement(command).ifPresent(
+                a -> {
+                    AnnouncementService.getInstance().removeGroups(a.getUuid(), groupIds);
+                    groupIds.forEach(groupId -> {
+                        if (a.getGroups().contains(groupId)) {
+                            command.reply("取消群 " + groupId + " 成功");
+                        } else {
+                            command.reply("未找到群 " + groupId);
+                        }
+                    });
+                }
         );
     }
 
     /**
      * 设置指定公告的纯文本体
      *
-     * @param event 好友信息事件
+     * @param command 命令
      */
-    public void setPlainBody(FriendMessageEvent event) {
-
-        if (!event.getMessage().contentToString().startsWith("纯文本公告")) {
-            return;
-        }
-
+    public void setPlainBody(Command command) {
         var pb = new PlainBody();
-        var lines = event.getMessage().contentToString().split("\n", 2);
+        var lines = command.getContent().split("\n", 2);
         if (lines.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.SET_PLAIN_BODY);
+            command.reply("命令格式错误, 用法:\n" + Usage.SET_PLAIN_BODY);
             return;
         }
         var content = lines[1];
         pb.setContent(content);
 
-        getSelectedAnnouncement(event).ifPresent(
+        getSelectedAnnouncement(command).ifPresent(
                 a -> {
                     AnnouncementService.getInstance().setBody(a.getUuid(), pb);
-                    event.getSender().sendMessage("纯文本公告设置成功");
+                    command.reply("纯文本公告设置成功");
                 }
         );
     }
@@ -347,25 +400,29 @@ public class AnnouncementController {
     /**
      * 设置指定公告的模板体
      *
-     * @param event 好友消息事件
+     * @param command 命令
      */
-    public void setTemplateBody(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("模板公告")) {
-            return;
-        }
-        String[] line = event.getMessage().contentToString().split("\n");
-        String[] firstLine = line[0].split(" ");
+    public void setTemplateBody(Command command) {
+        String[] line = command.getContent().split("\n");
+        String[] firstLine = line[0].strip().split("\\s+");
 
-        if (firstLine.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.SET_TEMPLATE_BODY);
-            return;
+        Optional<Template> optTemplate;
+        if (firstLine.length >= 2) {
+            optTemplate = getTemplate(firstLine[1]);
+        } else {
+            // 未指定模板时使用最近创建、修改或查看的模板
+            var selected = SessionService.getInstance().getSelectedTemplate(command.getSender().getId());
+            if (selected.isEmpty()) {
+                command.reply("命令格式错误, 用法:\n" + Usage.SET_TEMPLATE_BODY);
+                return;
+            }
+            optTemplate = TemplateService.getInstance().get(selected.get());
         }
-        var optTemplate = getTemplate(firstLine[1]);
         if (optTemplate.isEmpty()) {
-            event.getSender().sendMessage("模板不存在");
+            command.reply("模板不存在");
             return;
         }
-        var optAnn = getSelectedAnnouncement(event);
+        var optAnn = getSelectedAnnouncement(command);
         if (optAnn.isEmpty()) {
             return;
         }
@@ -389,7 +446,7 @@ public class AnnouncementController {
         AnnouncementService.getInstance()
                 .setBody(optAnn.get().getUuid(), body)
                 .ifPresent(ann ->
-                        event.getSender().sendMessage("设置成功! 预览:\n" + ann.getBody().getBodyString())
+                        command.reply("设置成功! 预览:\n" + ann.getBody().getBodyString())
                 );
 
 
@@ -398,63 +455,52 @@ public class AnnouncementController {
     /**
      * 开启定时公告的发布
      *
-     * @param event 好友信息事件
+     * @param command 命令
      */
-    public void enableAnnouncement(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().trim().equals("开启公告")) {
-            return;
-        }
-
-        getSelectedAnnouncement(event)
+    public void enableAnnouncement(Command command) {
+        getSelectedAnnouncement(command)
                 .flatMap(a -> AnnouncementService.getInstance().enable(a.getUuid()))
-                .ifPresent(r -> event.getSender().sendMessage("开启成功"));
+                .ifPresent(r -> command.reply("开启成功"));
     }
 
 
     /**
      * 暂停定时公告的发布
      *
-     * @param event 好友信息事件
+     * @param command 命令
      */
-    public void disableAnnouncement(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().trim().equals("禁用公告")) {
-            return;
-        }
-
-        getSelectedAnnouncement(event)
+    public void disableAnnouncement(Command command) {
+        getSelectedAnnouncement(command)
                 .flatMap(a -> AnnouncementService.getInstance().disable(a.getUuid()))
-                .ifPresent(r -> event.getSender().sendMessage("禁用成功"));
+                .ifPresent(r -> command.reply("禁用成功"));
     }
 
     /**
      * 新建触发器
      *
-     * @param event 好友信息事件
+     * @param command 命令
      */
-    public void newTrigger(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("新建触发器")) {
-            return;
-        }
-        var line = event.getMessage().contentToString().split(" ", 2);
-        if (line.length != 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.NEW_TRIGGER);
+    public void newTrigger(Command command) {
+        var cron = command.getArgs();
+        if (cron.isEmpty()) {
+            command.reply("命令格式错误, 用法:\n" + Usage.NEW_TRIGGER);
             return;
         }
         try {
-            new SchedulingPattern(line[1]);
-        } catch (InvalidPatternException exception) {
-            event.getSender().sendMessage("请输入 cron4j 支持的表达式\n" + "http://www.sauronsoftware.it/projects/cron4j/manual.php");
+            CronExpression.compile(cron);
+        } catch (IllegalArgumentException exception) {
+            command.reply("请输入 cron4j 支持的表达式\n" + "http://www.sauronsoftware.it/projects/cron4j/manual.php");
             return;
         }
-        getSelectedAnnouncement(event).ifPresent(
+        getSelectedAnnouncement(command).ifPresent(
                 a -> {
                     // 新建触发器
                     var t = new Trigger();
                     t.setUuid(UUID.randomUUID());
-                    t.setCron(line[1]);
+                    t.setCron(cron);
                     // 加入触发器
                     AnnouncementService.getInstance().addTrigger(a.getUuid(), t).ifPresent(
-                            ann -> event.getSender().sendMessage("添加触发器成功")
+                            ann -> command.reply("添加触发器成功")
                     );
                 }
         );
@@ -463,24 +509,22 @@ public class AnnouncementController {
     /**
      * 删除触发器
      *
-     * @param event 好友消息事件
+     * @param command 命令
      */
-    public void deleteTrigger(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("删除触发器")) {
-            return;
-        }
-        var line = event.getMessage().contentToString().split(" ");
+    public void deleteTrigger(Command command) {
+        var args = command.getArgList();
 
-        getSelectedAnnouncement(event).ifPresent(
+        getSelectedAnnouncement(command).ifPresent(
                 a -> {
-                    if (line.length == 1) {
-                        // forEach里不能修改原数组, 需要先进行克隆
-                        new ArrayList<>(a.getTriggers()).forEach(t -> AnnouncementService.getInstance().removeTrigger(a.getUuid(), t.getUuid()));
-                        event.getSender().sendMessage("已删除该公告的所有触发器");
+                    if (args.isEmpty()) {
+                        AnnouncementService.getInstance().clearTriggers(a.getUuid());
+                        command.reply("已删除该公告的所有触发器");
                     } else {
-                        Arrays.stream(line).skip(1)
-                                .forEach(trigger -> AnnouncementService.getInstance().removeTrigger(a.getUuid(), UUID.fromString(trigger)));
-                        event.getSender().sendMessage("已删除该公告中的指定的触发器");
+                        var triggerIDs = args.stream()
+                                .map(UUID::fromString)
+                                .collect(Collectors.toList());
+                        AnnouncementService.getInstance().removeTriggers(a.getUuid(), triggerIDs);
+                        command.reply("已删除该公告中的指定的触发器");
                     }
                 }
         );
@@ -491,41 +535,35 @@ public class AnnouncementController {
     /**
      * 预览
      *
-     * @param event 好友消息事件
+     * @param command 命令
      */
-    public void preview(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().trim().equals("预览")) {
-            return;
-        }
-        getSelectedAnnouncement(event).ifPresent(
-                a -> event.getSender().sendMessage(a.getBody().getBodyString())
+    public void preview(Command command) {
+        getSelectedAnnouncement(command).ifPresent(
+                a -> command.reply(a.getBody().getBodyString())
         );
     }
 
     /**
      * 设置变量
-     * @param event 好友消息事件
+     * @param command 命令
      */
 
-    public void setVariable(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("设置变量")) {
-            return;
-        }
-        var line = event.getMessage().contentToString().split("\n");
+    public void setVariable(Command command) {
+        var line = command.getContent().split("\n");
 
         if (line.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.SET_VARIABLE);
+            command.reply("命令格式错误, 用法:\n" + Usage.SET_VARIABLE);
             return;
         }
 
-        getSelectedAnnouncement(event).ifPresent(
+        getSelectedAnnouncement(command).ifPresent(
                 a -> {
                     var body = a.getBody();
                     if (!(body instanceof TemplateBody)) {
-                        event.getSender().sendMessage("当前选中的公告不是模板公告");
+                        command.reply("当前选中的公告不是模板公告");
                         return;
                     }
-                    var tb = ((TemplateBody) body);
+                    var tb = ((TemplateBody) body).copy();
                     Arrays.stream(line).skip(1).forEach(kv -> {
                         var skv = kv.split("\\s*=\\s*", 2);
                         if (skv.length < 1) {
@@ -537,62 +575,56 @@ public class AnnouncementController {
                         }
                         tb.getVar().put(skv[0], skv[1]);
                     });
-                    AnnouncementService.getInstance().setBody(a.getUuid(), a.getBody());
-                    event.getSender().sendMessage("变量设置成功");
+                    AnnouncementService.getInstance().setBody(a.getUuid(), tb);
+                    command.reply("变量设置成功");
                 }
         );
     }
 
     /**
      * 取消设置模板变量
-     * @param event 用户消息事件
+     * @param command 命令
      */
-    public void unsetVariable(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("取消变量")) {
-            return;
-        }
-        var line = event.getMessage().contentToString().split(" ");
+    public void unsetVariable(Command command) {
+        var args = command.getArgList();
 
-        if (line.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.UNSET_VARIABLE);
+        if (args.isEmpty()) {
+            command.reply("命令格式错误, 用法:\n" + Usage.UNSET_VARIABLE);
             return;
         }
 
-        getSelectedAnnouncement(event).ifPresent(
+        getSelectedAnnouncement(command).ifPresent(
                 a -> {
                     var body = a.getBody();
                     if (!(body instanceof TemplateBody)) {
-                        event.getSender().sendMessage("当前选中的公告不是模板公告");
+                        command.reply("当前选中的公告不是模板公告");
                         return;
                     }
-                    var tb = ((TemplateBody) body);
-                    Arrays.stream(line).skip(1).map(k -> k.replaceAll("\\$", "")).forEach(k -> tb.getVar().remove(k));
-                    AnnouncementService.getInstance().setBody(a.getUuid(), a.getBody());
-                    event.getSender().sendMessage("变量取消成功");
+                    var tb = ((TemplateBody) body).copy();
+                    args.stream().map(k -> k.replaceAll("\\$", "")).forEach(k -> tb.getVar().remove(k));
+                    AnnouncementService.getInstance().setBody(a.getUuid(), tb);
+                    command.reply("变量取消成功");
                 });
     }
 
     /**
      * 显示公告内容
-     * @param event 好友消息事件
+     * @param command 命令
      */
-    public void showAnnouncement(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().trim().equals("查看公告")) {
-            return;
-        }
-        getSelectedAnnouncement(event).ifPresent(a -> event.getUser().sendMessage(formatAnnouncement(a)));
+    public void showAnnouncement(Command command) {
+        getSelectedAnnouncement(command).ifPresent(a -> command.reply(formatAnnouncement(a)));
     }
 
-    public void manualTrigger(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().trim().equals("发送公告")) {
-            return;
-        }
-        getSelectedAnnouncement(event).ifPresent(a -> {
-            if (AnnouncementService.getInstance().manualTrigger(a.getUuid())) {
-                event.getSender().sendMessage("发送成功");
-            } else {
-                event.getSender().sendMessage("发送失败");
+    public void manualTrigger(Command command) {
+        getSelectedAnnouncement(command).ifPresent(a -> {
+            var sending = AnnouncementService.getInstance().manualTrigger(a.getUuid());
+            if (sending.isEmpty()) {
+                command.reply("发送失败");
+                return;
             }
+            command.reply("正在发送");
+            // 回复不等待发送完成, 不占用发送线程, 按顺序排在该用户已有的回复之后
+            sending.get().thenAccept(r -> command.reply("发送完成: " + r));
         });
     }
 
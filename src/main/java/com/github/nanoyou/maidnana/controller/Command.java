@@ -0,0 +1,81 @@
+package com.github.nanoyou.maidnana.controller;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import lombok.Getter;
+import net.mamoe.mirai.contact.Friend;
+import net.mamoe.mirai.event.events.FriendMessageEvent;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一条已解析的命令<br />
+ * 消息只转换为文本一次, 关键字为第一个空白字符之前的部分, 参数为其后的部分
+ */
+@Getter
+public class Command {
+    private final FriendMessageEvent event;
+    /**
+     * 消息的完整文本
+     */
+    private final String content;
+    /**
+     * 命令关键字, 如 "新建公告"
+     */
+    private final String keyword;
+    /**
+     * 关键字之后的文本, 已去除首尾空白
+     */
+    private final String args;
+    private List<String> argList = null;
+
+    private Command(FriendMessageEvent event, String content, String keyword, String args) {
+        this.event = event;
+        this.content = content;
+        this.keyword = keyword;
+        this.args = args;
+    }
+
+    /**
+     * 解析消息
+     *
+     * @param event 好友消息事件
+     * @return 命令
+     */
+    public static Command parse(FriendMessageEvent event) {
+        var content = event.getMessage().contentToString();
+        int begin = 0;
+        while (begin < content.length() && Character.isWhitespace(content.charAt(begin))) {
+            begin++;
+        }
+        int end = begin;
+        while (end < content.length() && !Character.isWhitespace(content.charAt(end))) {
+            end++;
+        }
+        return new Command(event, content, content.substring(begin, end), content.substring(end).strip());
+    }
+
+    /**
+     * @return 以空白分隔的参数, 没有参数时为空列表
+     */
+    public List<String> getArgList() {
+        if (argList == null) {
+            argList = args.isEmpty() ? List.of() : Arrays.asList(args.split("\\s+"));
+        }
+        return argList;
+    }
+
+    public Friend getSender() {
+        return event.getSender();
+    }
+
+    /**
+     * 回复发送者, 以最高优先级排队发送, 不等待发送完成<br />
+     * 同一用户的回复按调用顺序逐条发送, 可以在任意线程中调用
+     *
+     * @param message 消息
+     */
+    public void reply(String message) {
+        MaidNana.INSTANCE.getCommandRouter().reply(getSender(), message);
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.nanoyou.maidnana.controller;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
+import com.github.nanoyou.maidnana.service.OutboundService;
+import com.github.nanoyou.maidnana.util.MailboxExecutor;
+import lombok.Getter;
+import net.mamoe.mirai.contact.Friend;
+import net.mamoe.mirai.event.events.FriendMessageEvent;
+import net.mamoe.mirai.message.data.PlainText;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 命令分发<br />
+ * 所有命令只订阅一次消息事件, 每条消息解析一次后按关键字查表, 只调用对应的处理方法<br />
+ * 处理方法不在 mirai 的事件线程中执行, 而是按发送者放入信箱: 同一用户的命令按顺序执行,
+ * 不同用户的命令并行执行, 读写磁盘与回复消息不会阻塞事件处理
+ */
+public class CommandRouter {
+    private final Map<String, Route> routes = new HashMap<>();
+    @Getter
+    private final MailboxExecutor<Long> executor =
+            new MailboxExecutor<>("MaidNana-Command", MaidNanaConstant.COMMAND_PARALLELISM);
+    /**
+     * 用户 QQ 号 -> 该用户最后一条回复, 发送完成后移除
+     */
+    private final Map<Long, CompletableFuture<Void>> replies = new ConcurrentHashMap<>();
+
+    /**
+     * 已注册的命令
+     *
+     * @param handler 处理方法
+     * @param exact   是否只在消息恰好为关键字时执行
+     */
+    private record Route(Consumer<Command> handler, boolean exact) {
+    }
+
+    /**
+     * 注册命令, 关键字之后可以带参数
+     *
+     * @param keyword 关键字
+     * @param handler 处理方法
+     * @return this
+     * @throws IllegalStateException 关键字已被注册
+     */
+    public CommandRouter register(String keyword, Consumer<Command> handler) {
+        return register(keyword, handler, false);
+    }
+
+    /**
+     * 注册不带参数的命令, 关键字之后还有其他文本时不执行<br />
+     * 用于删除公告等作用于已选择对象的命令, 避免 "删除公告 xyz" 误删已选择的公告
+     *
+     * @param keyword 关键字
+     * @param handler 处理方法
+     * @return this
+     * @throws IllegalStateException 关键字已被注册
+     */
+    public CommandRouter registerExact(String keyword, Consumer<Command> handler) {
+        return register(keyword, handler, true);
+    }
+
+    private CommandRouter register(String keyword, Consumer<Command> handler, boolean exact) {
+        if (routes.putIfAbsent(keyword, new Route(handler, exact)) != null) {
+            throw new IllegalStateException("命令 " + keyword + " 已被注册");
+        }
+        return this;
+    }
+
+    /**
+     * 分发消息, 不是命令的消息被忽略
+     *
+     * @param event 好友消息事件
+     */
+    public void dispatch(FriendMessageEvent event) {
+        var command = Command.parse(event);
+        var route = routes.get(command.getKeyword());
+        if (route == null || route.exact() && !command.getArgs().isEmpty()) {
+            return;
+        }
+        executor.execute(command.getSender().getId(), () -> route.handler().accept(command));
+    }
+
+    /**
+     * 回复用户, 不等待发送完成<br />
+     * 同一用户的回复串成一条链, 上一条发送完成或失败后才放入发送队列, 因此按调用顺序到达;
+     * 命令线程不会因机器人限速而被占用
+     *
+     * @param friend  用户
+     * @param message 消息
+     */
+    void reply(Friend friend, String message) {
+        var id = friend.getId();
+        var tail = replies.compute(id, (k, last) -> (last == null ? CompletableFuture.<Void>completedFuture(null) : last)
+                .thenCompose(v -> OutboundService.getInstance()
+                        .send(friend, new PlainText(message), OutboundService.Priority.COMMAND_REPLY))
+                .exceptionally(e -> {
+                    MaidNana.INSTANCE.getLogger().warning("无法回复 " + id + ": " + e.getMessage());
+                    return null;
+                }));
+        tail.whenComplete((r, e) -> replies.remove(id, tail));
+    }
+
+    /**
+     * 停止接受命令, 等待已收到的命令执行完
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
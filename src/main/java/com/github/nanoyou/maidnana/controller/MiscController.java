@@ -1,7 +1,10 @@
 package com.github.nanoyou.maidnana.controller;
 
+import com.github.nanoyou.maidnana.MaidNana;
 import com.github.nanoyou.maidnana.constant.Usage;
-import net.mamoe.mirai.event.events.FriendMessageEvent;
+import com.github.nanoyou.maidnana.dao.OutboxDao;
+import com.github.nanoyou.maidnana.service.OutboundService;
+import com.github.nanoyou.maidnana.service.TemplateService;
 
 public class MiscController {
     private static final MiscController instance = new MiscController();
@@ -10,11 +13,39 @@ public class MiscController {
         return instance;
     }
 
-    public void usage(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().trim().equals("帮助")) {
-            return;
+    public void usage(Command command) {
+        command.reply(Usage.USAGE);
+    }
+
+    /**
+     * 查看运行状态
+     * @param command 命令
+     */
+    public void status(Command command) {
+        var cache = TemplateService.getInstance().getRenderCache();
+        var hits = cache.getHits();
+        var total = hits + cache.getMisses();
+        var sb = new StringBuilder();
+        sb.append("渲染缓存: ").append(cache.size()).append(" 条, ").append(cache.getChars()).append(" 字符\n");
+        sb.append("命中: ").append(hits).append(", 未命中: ").append(cache.getMisses());
+        if (total > 0) {
+            sb.append(", 命中率: ").append(hits * 100 / total).append("%");
+        }
+        var commands = MaidNana.INSTANCE.getCommandRouter().getExecutor();
+        sb.append("\n命令队列: ").append(commands.getPending()).append(" 条待执行, ")
+                .append(commands.getActiveMailboxes()).append(" 个用户, 单用户最多排队 ")
+                .append(commands.getMaxDepth()).append(" 条, 已执行 ").append(commands.getCompleted()).append(" 条");
+        var outbox = OutboxDao.getInstance();
+        sb.append("\n发件箱: ").append(outbox.getPendingCount()).append(" 条未完成, ")
+                .append(outbox.getDeadCount()).append(" 条已放弃");
+        var outbound = OutboundService.getInstance();
+        sb.append("\n发送队列: ").append(outbound.getQueued()).append(" 条待发送");
+        for (var priority : OutboundService.Priority.values()) {
+            sb.append("\n").append(priority.getDescription()).append(": 已发送 ").append(outbound.getSent(priority))
+                    .append(" 条, 平均等待 ").append(outbound.getAverageLatencyMillis(priority))
+                    .append("ms, 最长等待 ").append(outbound.getMaxLatencyMillis(priority)).append("ms");
         }
-        event.getSender().sendMessage(Usage.USAGE);
+        command.reply(sb.toString());
     }
 
     public void p() {
@@ -0,0 +1,44 @@
+package com.github.nanoyou.maidnana.controller;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import net.mamoe.mirai.console.command.CommandSender;
+import net.mamoe.mirai.console.command.java.JCompositeCommand;
+import net.mamoe.mirai.console.permission.PermissionService;
+
+/**
+ * 控制台命令, 授予或撤销公告权限<br />
+ * 通过该命令修改权限会使缓存的检查结果立即失效; 使用 /perm 修改的权限在缓存过期后生效, 或执行 refresh 立即生效
+ */
+public final class PermissionCommand extends JCompositeCommand {
+    public static final PermissionCommand INSTANCE = new PermissionCommand();
+
+    private PermissionCommand() {
+        super(MaidNana.INSTANCE, "nana-perm");
+        setDescription("管理 MaidNana 公告权限");
+    }
+
+    @SubCommand("grant")
+    @Description("授予好友公告权限")
+    public void grant(CommandSender sender, long qq) {
+        var permittee = new MaidNana.Permittee(0, qq);
+        PermissionService.permit(permittee.toPermitteeId(), MaidNana.INSTANCE.getAnnouncementPermission());
+        MaidNana.INSTANCE.getPermissionCache().invalidate(permittee);
+        sender.sendMessage("已授予 " + qq + " 公告权限");
+    }
+
+    @SubCommand("revoke")
+    @Description("撤销好友的公告权限")
+    public void revoke(CommandSender sender, long qq) {
+        var permittee = new MaidNana.Permittee(0, qq);
+        PermissionService.cancel(permittee.toPermitteeId(), MaidNana.INSTANCE.getAnnouncementPermission(), false);
+        MaidNana.INSTANCE.getPermissionCache().invalidate(permittee);
+        sender.sendMessage("已撤销 " + qq + " 的公告权限");
+    }
+
+    @SubCommand("refresh")
+    @Description("清空权限缓存, 使 /perm 的修改立即生效")
+    public void refresh(CommandSender sender) {
+        MaidNana.INSTANCE.getPermissionCache().invalidateAll();
+        sender.sendMessage("权限缓存已清空");
+    }
+}
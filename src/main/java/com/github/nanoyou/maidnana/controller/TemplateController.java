@@ -2,8 +2,9 @@ package com.github.nanoyou.maidnana.controller;
 
 import com.github.nanoyou.maidnana.constant.Usage;
 import com.github.nanoyou.maidnana.entity.Template;
+import com.github.nanoyou.maidnana.service.AnnouncementService;
+import com.github.nanoyou.maidnana.service.SessionService;
 import com.github.nanoyou.maidnana.service.TemplateService;
-import net.mamoe.mirai.event.events.FriendMessageEvent;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -40,60 +41,59 @@ public class TemplateController {
      * 腾讯会议: $tencent_meeting$<br />
      * -----------------------<br />
      */
-    public void newTemplate(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("新建模板")) {
-            return;
-        }
-        var lines = event.getMessage().contentToString().split("\n", 2);
+    public void newTemplate(Command command) {
+        var lines = command.getContent().split("\n", 2);
         if (lines.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.NEW_TEMPLATE);
+            command.reply("命令格式错误, 用法:\n" + Usage.NEW_TEMPLATE);
             return;
         }
-        var alias = lines[0].replaceFirst("新建模板\\s*", "");
+        var alias = lines[0].strip().substring(command.getKeyword().length()).strip();
         var template = lines[1];
         if (template.equals("")) {
-            event.getSender().sendMessage("模板不能为空!");
+            command.reply("模板不能为空!");
             return;
         }
 
         Template result;
         if ("".equals(alias)) {
             result = TemplateService.getInstance().create(template);
-            event.getSender().sendMessage("创建成功, UUID: " + result.getUuid().toString());
+            command.reply("创建成功, UUID: " + result.getUuid().toString());
         } else {
             var t = TemplateService.getInstance().create(template, alias);
             if (t.isEmpty()) {
-                event.getSender().sendMessage("创建失败, 别名" + alias + "已存在");
+                command.reply("创建失败, 别名" + alias + "已存在");
                 return;
             }
             result = t.get();
-            event.getSender().sendMessage("创建成功, UUID: " + result.getUuid().toString() + ", 别名: " + result.getAlias());
+            command.reply("创建成功, UUID: " + result.getUuid().toString() + ", 别名: " + result.getAlias());
         }
+        SessionService.getInstance().selectTemplate(command.getSender().getId(), result.getUuid());
     }
 
     /**
      * 删除模板
      */
-    public void deleteTemplate(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("删除模板")) {
-            return;
-        }
-        var line = event.getMessage().contentToString().split(" ");
-        if (line.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.DELETE_TEMPLATE);
+    public void deleteTemplate(Command command) {
+        var args = command.getArgList();
+        if (args.isEmpty()) {
+            command.reply("命令格式错误, 用法:\n" + Usage.DELETE_TEMPLATE);
             return;
         }
-        var template = getTemplate(line[1]);
+        var template = getTemplate(args.get(0));
         if (template.isEmpty()) {
-            event.getSender().sendMessage("模板未找到");
+            command.reply("模板未找到");
             return;
         }
         TemplateService.getInstance().delete(template.get().getUuid()).ifPresent(
                 r -> {
                     if (r.getAlias() == null) {
-                        event.getSender().sendMessage("删除 " + r.getUuid() + " 成功");
+                        command.reply("删除 " + r.getUuid() + " 成功");
                     } else {
-                        event.getSender().sendMessage("删除 " + r.getAlias() + "(" + r.getUuid() + ") 成功");
+                        command.reply("删除 " + r.getAlias() + "(" + r.getUuid() + ") 成功");
+                    }
+                    var used = AnnouncementService.getInstance().countByTemplate(r.getUuid());
+                    if (used > 0) {
+                        command.reply("注意: 仍有 " + used + " 条公告使用该模板, 这些公告的定时发送已暂停, 请为它们重新设置公告体");
                     }
                 }
         );
@@ -103,31 +103,29 @@ public class TemplateController {
      * 修改模板
      *
      */
-    public void modifyTemplate(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("修改模板")) {
-            return;
-        }
-        var lines = event.getMessage().contentToString().split("\n", 2);
+    public void modifyTemplate(Command command) {
+        var lines = command.getContent().split("\n", 2);
         if (lines.length < 2) {
-            event.getSender().sendMessage("命令格式错误, 用法:\n" + Usage.MODIFY_TEMPLATE);
+            command.reply("命令格式错误, 用法:\n" + Usage.MODIFY_TEMPLATE);
             return;
         }
-        var template = getTemplate(lines[0].replaceFirst("修改模板\\s*", ""));
+        var template = getTemplate(lines[0].strip().substring(command.getKeyword().length()).strip());
         if (template.isEmpty()) {
-            event.getSender().sendMessage("模板未找到");
+            command.reply("模板未找到");
             return;
         }
         var body = lines[1];
         if (body.equals("")) {
-            event.getSender().sendMessage("模板体不能为空");
+            command.reply("模板体不能为空");
             return;
         }
         TemplateService.getInstance().modify(template.get().getUuid(), body).ifPresent(
                 r -> {
+                    SessionService.getInstance().selectTemplate(command.getSender().getId(), r.getUuid());
                     if (r.getAlias() == null) {
-                        event.getSender().sendMessage("修改 " + r.getUuid().toString() + " 成功");
+                        command.reply("修改 " + r.getUuid().toString() + " 成功");
                     } else {
-                        event.getSender().sendMessage("修改 " + r.getAlias() + "(" + r.getUuid().toString() + ") 成功");
+                        command.reply("修改 " + r.getAlias() + "(" + r.getUuid().toString() + ") 成功");
                     }
                 }
         );
@@ -150,6 +148,10 @@ public class TemplateController {
             r.append(template.getUuid());
             r.append(')');
         }
+        var used = AnnouncementService.getInstance().countByTemplate(template.getUuid());
+        if (used > 0) {
+            r.append(" 被 ").append(used).append(" 条公告使用");
+        }
         r.append('\n');
         r.append(template.getTemplate());
         return r.toString();
@@ -158,30 +160,27 @@ public class TemplateController {
     /**
      * 查看模板信息
      */
-    public void showTemplate(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().startsWith("查看模板 ")) {
-            return;
-        }
-        var idOrAlias = event.getMessage().contentToString().replaceFirst("查看模板\\s*", "");
+    public void showTemplate(Command command) {
+        var idOrAlias = command.getArgs();
         if ("".equals(idOrAlias)) {
-            event.getSender().sendMessage("格式错误, 用法:\n" + Usage.SHOW_TEMPLATE);
+            command.reply("格式错误, 用法:\n" + Usage.SHOW_TEMPLATE);
             return;
         }
         getTemplate(idOrAlias).ifPresentOrElse(
-                r -> event.getSender().sendMessage(formatTemplate(r)),
-                () -> event.getSender().sendMessage("模板未找到")
+                r -> {
+                    SessionService.getInstance().selectTemplate(command.getSender().getId(), r.getUuid());
+                    command.reply(formatTemplate(r));
+                },
+                () -> command.reply("模板未找到")
         );
     }
 
     /**
      * 查看模板列表
      */
-    public void listTemplates(FriendMessageEvent event) {
-        if (!event.getMessage().contentToString().trim().equals("模板列表")) {
-            return;
-        }
+    public void listTemplates(Command command) {
         TemplateService.getInstance().getAll().forEach(template ->
-            event.getSender().sendMessage(formatTemplate(template))
+            command.reply(formatTemplate(template))
         );
     }
 }
@@ -1,6 +1,7 @@
 package com.github.nanoyou.maidnana.dao;
 
 import com.github.nanoyou.maidnana.entity.Aliasable;
+import com.github.nanoyou.maidnana.util.PersistentMap;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -8,47 +9,54 @@ import java.util.Optional;
 import java.util.UUID;
 
 public abstract class AliasDao<T extends Aliasable> extends BaseDao<T> {
-    private final Map<String, T> data = new HashMap<>();
+    /**
+     * 别名 -> UUID 的不可变快照, 只在 this 的锁内替换, 读取无需加锁
+     */
+    private volatile PersistentMap<String, UUID> data = PersistentMap.empty();
+    /**
+     * UUID -> 建立索引时的别名, 用于在值被原地修改后仍能找到旧的别名, 受 this 保护
+     */
+    private final Map<UUID, String> aliases = new HashMap<>();
+
     public AliasDao() {
         super();
-        load();
-    }
-    private void load() {
-        data.clear();
-        getAll().stream()
-                .filter(v -> v.getAlias() != null && !"".equals(v.getAlias()))
-                .forEach(v -> data.put(v.getAlias(), v));
-    }
-
-    public Optional<T> get(String alias) {
-        return Optional.ofNullable(data.get(alias));
+        synchronized (this) {
+            getAll().forEach(v -> onChanged(null, v));
+        }
     }
 
-    public Optional<T> delete(String alias) {
-        var t = data.get(alias);
-        if (t == null) {
-            return Optional.empty();
-        }
-        return super.delete(t.getUuid());
+    private static boolean hasAlias(Aliasable value) {
+        return value.getAlias() != null && !"".equals(value.getAlias());
     }
 
     @Override
-    public void add(T value) {
-        super.add(value);
-        load();
+    protected void onChanged(T oldValue, T newValue) {
+        var id = newValue != null ? newValue.getUuid() : oldValue.getUuid();
+        var index = data;
+        var oldAlias = aliases.remove(id);
+        if (oldAlias != null && id.equals(index.get(oldAlias))) {
+            index = index.minus(oldAlias);
+        }
+        if (newValue != null && hasAlias(newValue)) {
+            index = index.plus(newValue.getAlias(), id);
+            aliases.put(id, newValue.getAlias());
+        }
+        data = index;
     }
 
-    @Override
-    public Optional<T> delete(UUID id) {
-        var t = super.delete(id);
-        load();
-        return t;
+    public Optional<T> get(String alias) {
+        var id = data.get(alias);
+        if (id == null) {
+            return Optional.empty();
+        }
+        return get(id);
     }
 
-    @Override
-    public T modify(T value) {
-        var t =  super.modify(value);
-        load();
-        return t;
+    public Optional<T> delete(String alias) {
+        var t = get(alias);
+        if (t.isEmpty()) {
+            return Optional.empty();
+        }
+        return super.delete(t.get().getUuid());
     }
 }
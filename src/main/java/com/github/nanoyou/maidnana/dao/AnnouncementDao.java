@@ -2,21 +2,71 @@ package com.github.nanoyou.maidnana.dao;
 
 import com.github.nanoyou.maidnana.MaidNana;
 import com.github.nanoyou.maidnana.entity.Announcement;
+import com.github.nanoyou.maidnana.entity.TemplateBody;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 public class AnnouncementDao extends AliasDao<Announcement> {
     private static AnnouncementDao instance = null;
     public static AnnouncementDao getInstance() {
         if (instance == null) {
-            instance = new AnnouncementDao();
+            instance = started(new AnnouncementDao());
         }
         return instance;
     }
 
+    /**
+     * 群号 -> 发送到该群的公告
+     */
+    private final Index<Long, Announcement> groupIndex = addIndex(new Index<>(Announcement::getGroups));
+    /**
+     * 模板ID -> 使用该模板的公告
+     */
+    private final Index<UUID, Announcement> templateIndex = addIndex(new Index<>(a ->
+            a.getBody() instanceof TemplateBody b && b.getTemplateID() != null ? List.of(b.getTemplateID()) : List.of()));
+
+    /**
+     * 由索引中的 UUID 取得公告, 索引稍晚于主表发布, 已删除的公告会被跳过
+     */
+    private List<Announcement> resolve(List<UUID> ids) {
+        return ids.stream().map(this::get).flatMap(Optional::stream).collect(Collectors.toList());
+    }
+
+    /**
+     * 获取发送到指定群的公告
+     *
+     * @param groupID 群号
+     * @return 公告列表
+     */
+    public List<Announcement> getByGroup(long groupID) {
+        return resolve(groupIndex.get(groupID));
+    }
+
+    /**
+     * 获取使用指定模板的公告
+     *
+     * @param templateID 模板ID
+     * @return 公告列表
+     */
+    public List<Announcement> getByTemplate(UUID templateID) {
+        return resolve(templateIndex.get(templateID));
+    }
+
+    /**
+     * @param templateID 模板ID
+     * @return 使用指定模板的公告数量
+     */
+    public int countByTemplate(UUID templateID) {
+        return templateIndex.count(templateID);
+    }
+
     @Override
     public Path getPath() {
         return MaidNana.INSTANCE.getDataFolderPath().resolve("announcements.json");
@@ -1,31 +1,129 @@
 package com.github.nanoyou.maidnana.dao;
 
 import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
 import com.github.nanoyou.maidnana.entity.Identifiable;
-import com.github.nanoyou.maidnana.util.GsonUtil;
+import com.github.nanoyou.maidnana.util.PersistentMap;
 import com.github.nanoyou.maidnana.util.observer.ConcreteSubject;
 import com.github.nanoyou.maidnana.util.observer.Observer;
 import com.github.nanoyou.maidnana.util.observer.Subject;
 
-import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Function;
 
-public abstract class BaseDao<T extends Identifiable> implements Subject {
+public abstract class BaseDao<T extends Identifiable> implements Subject<List<ChangeEvent<T>>> {
     public abstract Path getPath();
     public abstract Type getType();
-    private final Map<UUID, T> data = new HashMap<>();
+    /**
+     * 当前数据的不可变快照, 写入时在 this 的锁内发布新的快照, 读取无需加锁
+     */
+    private volatile PersistentMap<UUID, T> data = PersistentMap.empty();
+
+    /**
+     * 实体类型, 由 getType() 的元素类型得到
+     */
+    private final Class<T> entityType;
+    /**
+     * 存储引擎
+     */
+    private final StorageEngine<T> engine;
+    /**
+     * 串行化延迟写入, 不与读写数据的锁混用
+     */
+    private final Object ioLock = new Object();
+    /**
+     * 延迟写入线程, 未开启延迟写入时为 null
+     */
+    private final WriteBehindFlusher flusher;
+    /**
+     * 尚未写入磁盘的修改, 值为 null 表示删除, 受 this 保护
+     */
+    private Map<UUID, T> dirty = new LinkedHashMap<>();
+    /**
+     * 二级索引, 受 this 保护
+     */
+    private final List<Index<?, T>> indexes = new ArrayList<>();
+    /**
+     * 存储引擎是否已启动, 受 this 保护
+     */
+    private boolean engineStarted = false;
 
+    @SuppressWarnings("unchecked")
     public BaseDao() {
-        if (Files.notExists(getPath())) {
-            MaidNana.INSTANCE.getLogger().info("正在创建默认配置文件 " + getPath().toString());
-            save();
-            return;
+        entityType = (Class<T>) ((ParameterizedType) getType()).getActualTypeArguments()[0];
+        engine = createEngine();
+        // 逐个放入快照, 加载期间不产生中间集合
+        engine.load(v -> data = data.plus(v.getUuid(), v));
+        if (MaidNanaConstant.WRITE_BEHIND_ENABLED) {
+            flusher = new WriteBehindFlusher("MaidNana-Flusher-" + getPath().getFileName(), this::flush,
+                    MaidNanaConstant.WRITE_BEHIND_FLUSH_INTERVAL_MILLIS,
+                    MaidNanaConstant.WRITE_BEHIND_MAX_DIRTY);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * 按 {@link MaidNanaConstant#STORAGE_ENGINE} 创建存储引擎<br />
+     * 使用 MVStore 时每个 Dao 一个数据文件, 与 JSON 文件同名, 扩展名为 .mv.db; 表为空时, 将已有的 JSON 数据文件与日志迁移进来, 之后原文件重命名为 .migrated
+     *
+     * @return 存储引擎
+     */
+    private StorageEngine<T> createEngine() {
+        var json = new JsonFileEngine<>(getPath(), getType(), entityType);
+        if (!"mvstore".equals(MaidNanaConstant.STORAGE_ENGINE)) {
+            return json;
+        }
+        var name = getPath().getFileName().toString().replaceFirst("\\.json$", "");
+        var file = getPath().resolveSibling(name + ".mv.db");
+        var engine = new MVStoreEngine<>(file, name, entityType);
+        if (engine.isEmpty() && Files.exists(getPath())) {
+            MaidNana.INSTANCE.getLogger().info("正在将 " + getPath().toString() + " 迁移到 " + file.toString());
+            var values = new LinkedHashMap<UUID, T>();
+            json.load(v -> values.put(v.getUuid(), v));
+            engine.commit(values);
+            json.archive();
+            MaidNana.INSTANCE.getLogger().info("已迁移 " + values.size() + " 条数据");
+        }
+        return engine;
+    }
+
+    /**
+     * 批量操作<br />
+     * 回调内的所有修改在 this 的锁内完成, 结束后一次性发布新的快照, 只持久化一次、
+     * 以一个变更事件列表异步通知一次观察者;
+     * 回调抛出异常时所有修改都被放弃
+     *
+     * @param action 对数据的操作
+     * @return 回调的返回值
+     */
+    public <R> R batch(Function<Batch<T>, R> action) {
+        synchronized (this) {
+            start();
+            var batch = new Batch<>(data);
+            var r = action.apply(batch);
+            var changes = batch.getChanges();
+            if (changes.isEmpty()) {
+                return r;
+            }
+            data = batch.getData();
+            var events = new ArrayList<ChangeEvent<T>>(changes.size());
+            changes.forEach((id, value) -> {
+                var old = batch.getOriginal(id);
+                if (old != null || value != null) {
+                    indexes.forEach(i -> i.update(old, value));
+                    onChanged(old, value);
+                    events.add(new ChangeEvent<>(entityType, id, old, value));
+                }
+            });
+            persist(changes);
+            notifyObservers(events);
+            return r;
         }
-        load();
     }
 
     /**
@@ -34,11 +132,10 @@ public abstract class BaseDao<T extends Identifiable> implements Subject {
      * @param value 要添加的值
      */
     public void add(T value) {
-        synchronized (this) {
-            data.put(value.getUuid(), value);
-            save();
-            notifyObservers();
-        }
+        batch(b -> {
+            b.add(value);
+            return null;
+        });
     }
 
     /**
@@ -48,14 +145,7 @@ public abstract class BaseDao<T extends Identifiable> implements Subject {
      * @return 取得的值
      */
     public Optional<T> get(UUID id) {
-        T r;
-        synchronized (this) {
-            r = data.get(id);
-        }
-        if (r == null) {
-            return Optional.empty();
-        }
-        return Optional.of(r);
+        return Optional.ofNullable(data.get(id));
     }
 
     /**
@@ -65,13 +155,7 @@ public abstract class BaseDao<T extends Identifiable> implements Subject {
      * @return  修改前的值
      */
     public T modify(T value) {
-        T r;
-        synchronized (this) {
-            r = data.put(value.getUuid(), value);
-            save();
-            notifyObservers();
-        }
-        return r;
+        return batch(b -> b.modify(value));
     }
 
     /**
@@ -81,65 +165,133 @@ public abstract class BaseDao<T extends Identifiable> implements Subject {
      * @return 被删除的值, 若未找到返回空
      */
     public Optional<T> delete(UUID id) {
-        T r;
-        synchronized (this) {
-            r = data.remove(id);
-            if (r == null) {
-                return Optional.empty();
-            }
-            save();
-            notifyObservers();
-        }
-        return Optional.of(r);
+        return batch(b -> b.delete(id));
     }
 
     /**
-     * 返回所有值
+     * 返回所有值, 返回的是当前快照的列表, 不可修改
      *
      * @return 全部值
      */
     public List<T> getAll() {
+        return data.values();
+    }
+
+    /**
+     * 值发生变化时调用, 调用时持有 this 的锁且新的快照已发布, 子类可借此维护索引<br />
+     * 注意: 修改前后可能是同一个对象
+     *
+     * @param oldValue 修改前的值, 新增时为 null
+     * @param newValue 修改后的值, 删除时为 null
+     */
+    protected void onChanged(T oldValue, T newValue) {
+    }
+
+    /**
+     * 注册二级索引, 用现有的值建立索引, 之后随每次修改自动更新
+     *
+     * @param index 索引
+     * @return 传入的索引
+     */
+    protected <K> Index<K, T> addIndex(Index<K, T> index) {
         synchronized (this) {
-            return new ArrayList<>(data.values());
+            getAll().forEach(v -> index.update(null, v));
+            indexes.add(index);
         }
+        return index;
     }
 
-    private void load() {
-        String jsonStr;
-        try {
-            jsonStr = Files.readString(getPath(), StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            MaidNana.INSTANCE.getLogger().error("无法读入 " + getPath().toString(), e);
-            throw new RuntimeException(e);
+    /**
+     * 启动存储引擎, 由单例工厂在构造完成后通过 {@link #started(BaseDao)} 调用<br />
+     * 此时子类已构造完成, 可以把 getAll 交给引擎, 不在构造器中泄露 this;
+     * 写入与关闭前也会检查一次, 避免未启动的引擎用空快照合并日志
+     */
+    synchronized void start() {
+        if (!engineStarted) {
+            engineStarted = true;
+            engine.start(this::getAll);
         }
-        Collection<T> r = GsonUtil.gson.fromJson(jsonStr, getType());
-        data.clear();
-        r.forEach(v -> data.put(v.getUuid(), v));
-    }
-    private void save() {
-        var jsonStr = GsonUtil.gson.toJson(data.values(), getType());
-        try {
-            Files.writeString(getPath(), jsonStr, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            MaidNana.INSTANCE.getLogger().error("无法写入 " + getPath().toString(), e);
-            throw new RuntimeException(e);
+    }
+
+    /**
+     * 启动 Dao 的存储引擎, 在单例工厂中包裹构造器使用
+     *
+     * @param dao 刚构造完成的 Dao
+     * @return 传入的 Dao
+     */
+    static <D extends BaseDao<?>> D started(D dao) {
+        dao.start();
+        return dao;
+    }
+
+    /**
+     * 持久化一批修改, 调用时需持有锁
+     *
+     * @param changes UUID -> 新的值, 值为 null 表示删除
+     */
+    private void persist(Map<UUID, T> changes) {
+        if (flusher != null) {
+            dirty.putAll(changes);
+            flusher.markDirty(changes.size());
+            return;
+        }
+        engine.commit(changes);
+    }
+
+    /**
+     * 将延迟的修改写入磁盘, 只在取走脏数据时短暂持有锁
+     */
+    private void flush() {
+        synchronized (ioLock) {
+            Map<UUID, T> changes;
+            synchronized (this) {
+                if (dirty.isEmpty()) {
+                    return;
+                }
+                changes = dirty;
+                dirty = new LinkedHashMap<>();
+            }
+            try {
+                engine.commit(changes);
+            } catch (RuntimeException e) {
+                // 写入失败, 放回脏数据由写入线程重试, 已有更新的修改时以新的为准
+                synchronized (this) {
+                    changes.forEach((id, value) -> {
+                        if (!dirty.containsKey(id)) {
+                            dirty.put(id, value);
+                        }
+                    });
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 关闭 Dao, 写入延迟的修改后关闭存储引擎
+     */
+    public void close() {
+        start();
+        if (flusher != null) {
+            flusher.close();
         }
+        engine.close();
     }
 
-    private final Subject subject = new ConcreteSubject();
+    private final Subject<List<ChangeEvent<T>>> subject = new ConcreteSubject<>();
 
     @Override
-    public void registerObserver(Observer observer) {
+    public void registerObserver(Observer<List<ChangeEvent<T>>> observer) {
         subject.registerObserver(observer);
     }
 
     @Override
-    public void removeObserver(Observer observer) {
+    public void removeObserver(Observer<List<ChangeEvent<T>>> observer) {
         subject.removeObserver(observer);
     }
 
     @Override
-    public void notifyObservers() {
-        subject.notifyObservers();
+    public void notifyObservers(List<ChangeEvent<T>> event) {
+        subject.notifyObservers(event);
     }
 }
@@ -0,0 +1,98 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.entity.Identifiable;
+import com.github.nanoyou.maidnana.util.PersistentMap;
+
+import java.util.*;
+
+/**
+ * 批量操作, 由 {@link BaseDao#batch} 创建<br />
+ * 操作作用于数据的工作副本, 批量操作结束后一次性发布、持久化并通知观察者; 中途抛出异常则全部放弃<br />
+ * 只能在 batch 的回调内使用
+ *
+ * @param <T> 实体类型
+ */
+public class Batch<T extends Identifiable> {
+    private PersistentMap<UUID, T> data;
+    /**
+     * 本次批量操作中被修改的值, 值为 null 表示删除
+     */
+    private final Map<UUID, T> changes = new LinkedHashMap<>();
+    /**
+     * 被修改的值在批量操作开始前的值, 新增时为 null
+     */
+    private final Map<UUID, T> originals = new HashMap<>();
+
+    Batch(PersistentMap<UUID, T> data) {
+        this.data = data;
+    }
+
+    /**
+     * 获取值, 能看到本次批量操作中之前的修改
+     *
+     * @param id uuid
+     * @return 取得的值
+     */
+    public Optional<T> get(UUID id) {
+        return Optional.ofNullable(data.get(id));
+    }
+
+    /**
+     * 添加值
+     *
+     * @param value 要添加的值
+     */
+    public void add(T value) {
+        modify(value);
+    }
+
+    /**
+     * 修改值, 会替换原来的值
+     *
+     * @param value 新的值
+     * @return 修改前的值
+     */
+    public T modify(T value) {
+        var id = value.getUuid();
+        var old = data.get(id);
+        record(id, old);
+        data = data.plus(id, value);
+        changes.put(id, value);
+        return old;
+    }
+
+    /**
+     * 删除值
+     *
+     * @param id UUID
+     * @return 被删除的值, 若未找到返回空
+     */
+    public Optional<T> delete(UUID id) {
+        var old = data.get(id);
+        if (old == null) {
+            return Optional.empty();
+        }
+        record(id, old);
+        data = data.minus(id);
+        changes.put(id, null);
+        return Optional.of(old);
+    }
+
+    private void record(UUID id, T old) {
+        if (!originals.containsKey(id)) {
+            originals.put(id, old);
+        }
+    }
+
+    PersistentMap<UUID, T> getData() {
+        return data;
+    }
+
+    Map<UUID, T> getChanges() {
+        return changes;
+    }
+
+    T getOriginal(UUID id) {
+        return originals.get(id);
+    }
+}
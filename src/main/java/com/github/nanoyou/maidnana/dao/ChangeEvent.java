@@ -0,0 +1,50 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.entity.Identifiable;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Dao 中一个值的变更事件<br />
+ * 一次批量操作的全部变更会在同一次通知中送达
+ *
+ * @param <T> 实体类型
+ */
+@Getter
+public class ChangeEvent<T extends Identifiable> {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    /**
+     * 实体类型
+     */
+    private final Class<T> entityType;
+    private final UUID uuid;
+    private final Type type;
+    /**
+     * 修改前的值, 新增时为 null
+     */
+    private final T oldValue;
+    /**
+     * 修改后的值, 删除时为 null
+     */
+    private final T newValue;
+
+    ChangeEvent(Class<T> entityType, UUID uuid, T oldValue, T newValue) {
+        this.entityType = entityType;
+        this.uuid = uuid;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        if (oldValue == null) {
+            this.type = Type.CREATED;
+        } else if (newValue == null) {
+            this.type = Type.DELETED;
+        } else {
+            this.type = Type.UPDATED;
+        }
+    }
+}
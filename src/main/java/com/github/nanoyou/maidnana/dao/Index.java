@@ -0,0 +1,104 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.entity.Identifiable;
+import com.github.nanoyou.maidnana.util.PersistentMap;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Dao 的二级索引, 键 -> 值的 UUID 集合<br />
+ * 与主表一样发布不可变快照, 读取无需加锁, 查询耗时只与结果数量有关;
+ * 修改只在 Dao 的锁内进行, 由 {@link BaseDao#addIndex(Index)} 注册后随主表自动维护
+ *
+ * @param <K> 索引键类型
+ * @param <T> 实体类型
+ */
+public class Index<K, T extends Identifiable> {
+    /**
+     * 由值得到索引键, 一个值可以有多个键
+     */
+    private final Function<T, Collection<K>> keyExtractor;
+    /**
+     * 键 -> (UUID -> UUID) 的不可变快照, 内层表只用作集合
+     */
+    private volatile PersistentMap<K, PersistentMap<UUID, UUID>> data = PersistentMap.empty();
+    /**
+     * UUID -> 建立索引时的键, 用于在值被原地修改后仍能找到旧的键, 受 Dao 的锁保护
+     */
+    private final Map<UUID, Set<K>> keys = new HashMap<>();
+
+    /**
+     * @param keyExtractor 由值得到索引键, 不能返回 null, 可以返回空集合
+     */
+    public Index(Function<T, Collection<K>> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * 值发生变化时更新索引, 调用时需持有 Dao 的锁
+     *
+     * @param oldValue 修改前的值, 新增时为 null
+     * @param newValue 修改后的值, 删除时为 null
+     */
+    void update(T oldValue, T newValue) {
+        var id = newValue != null ? newValue.getUuid() : oldValue.getUuid();
+        var oldKeys = keys.remove(id);
+        var newKeys = newValue == null ? Set.<K>of() : new HashSet<>(keyExtractor.apply(newValue));
+        var index = data;
+        if (oldKeys != null) {
+            for (var key : oldKeys) {
+                if (newKeys.contains(key)) {
+                    continue;
+                }
+                var ids = index.get(key);
+                if (ids == null) {
+                    continue;
+                }
+                ids = ids.minus(id);
+                index = ids.isEmpty() ? index.minus(key) : index.plus(key, ids);
+            }
+        }
+        for (var key : newKeys) {
+            if (oldKeys != null && oldKeys.contains(key)) {
+                continue;
+            }
+            var ids = index.get(key);
+            index = index.plus(key, (ids == null ? PersistentMap.<UUID, UUID>empty() : ids).plus(id, id));
+        }
+        if (!newKeys.isEmpty()) {
+            keys.put(id, newKeys);
+        }
+        data = index;
+    }
+
+    /**
+     * 查询键对应的值
+     *
+     * @param key 索引键
+     * @return 值的 UUID 列表, 不可修改, 不存在返回空列表
+     */
+    public List<UUID> get(K key) {
+        var ids = data.get(key);
+        if (ids == null) {
+            return List.of();
+        }
+        return ids.values();
+    }
+
+    /**
+     * @param key 索引键
+     * @return 键对应的值的数量
+     */
+    public int count(K key) {
+        var ids = data.get(key);
+        return ids == null ? 0 : ids.size();
+    }
+
+    /**
+     * @return 索引中键的数量
+     */
+    public int size() {
+        return data.size();
+    }
+}
@@ -0,0 +1,218 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.entity.Identifiable;
+import com.github.nanoyou.maidnana.util.GsonUtil;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 追加写的变更日志, 每次修改只写入被修改的实体<br />
+ * 每行一条记录, 格式为:<br />
+ * {"op":"put","value":{...}}<br />
+ * {"op":"delete","uuid":"..."}<br />
+ * 加载时先读入快照, 再按顺序重放日志; 合并时日志会被轮换为待合并日志, 快照写入完成后删除
+ *
+ * @param <T> 实体类型
+ */
+class Journal<T extends Identifiable> {
+    private final Path path;
+    private final Path compactingPath;
+    private final Type elementType;
+    private Writer writer = null;
+    /**
+     * 当前日志中的记录数
+     */
+    private int records = 0;
+
+    Journal(Path path, Type elementType) {
+        this.path = path;
+        this.compactingPath = path.resolveSibling(path.getFileName() + ".compacting");
+        this.elementType = elementType;
+    }
+
+    /**
+     * 将待合并日志和当前日志依次重放到数据中
+     *
+     * @param data 从快照读入的数据
+     */
+    void replay(Map<UUID, T> data) {
+        replay(v -> data.put(v.getUuid(), v), data::remove);
+    }
+
+    /**
+     * 将待合并日志和当前日志依次重放, 由回调应用每条记录
+     *
+     * @param put    写入实体
+     * @param delete 删除实体
+     */
+    void replay(Consumer<T> put, Consumer<UUID> delete) {
+        records = replay(compactingPath, put, delete) + replay(path, put, delete);
+    }
+
+    private int replay(Path file, Consumer<T> put, Consumer<UUID> delete) {
+        if (Files.notExists(file)) {
+            return 0;
+        }
+        int count = 0;
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    apply(line, put, delete);
+                } catch (IOException | JsonParseException | IllegalStateException e) {
+                    // 通常是写入一半时进程退出, 之后的记录都不可信
+                    MaidNana.INSTANCE.getLogger().warning("日志 " + file + " 第 " + (count + 1) + " 条记录已损坏, 忽略其后的记录");
+                    break;
+                }
+                count++;
+            }
+        } catch (IOException e) {
+            MaidNana.INSTANCE.getLogger().error("无法读入 " + file, e);
+            throw new RuntimeException(e);
+        }
+        return count;
+    }
+
+    private void apply(String line, Consumer<T> put, Consumer<UUID> delete) throws IOException {
+        var in = new JsonReader(new StringReader(line));
+        String op = null;
+        UUID uuid = null;
+        T value = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "op" -> op = in.nextString();
+                case "uuid" -> uuid = UUID.fromString(in.nextString());
+                case "value" -> value = GsonUtil.compactGson.fromJson(in, elementType);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if ("put".equals(op) && value != null) {
+            put.accept(value);
+        } else if ("delete".equals(op) && uuid != null) {
+            delete.accept(uuid);
+        } else {
+            throw new JsonParseException("未知的日志记录: " + line);
+        }
+    }
+
+    /**
+     * 记录一批修改, 全部写入后才刷新到磁盘
+     *
+     * @param changes UUID -> 新的值, 值为 null 表示删除
+     */
+    void append(Map<UUID, T> changes) {
+        try {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (var change : changes.entrySet()) {
+                writer.write(change.getValue() == null ? deleteRecord(change.getKey()) : putRecord(change.getValue()));
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (IOException e) {
+            MaidNana.INSTANCE.getLogger().error("无法写入 " + path, e);
+            throw new RuntimeException(e);
+        }
+        records += changes.size();
+    }
+
+    private String putRecord(T value) throws IOException {
+        var sw = new StringWriter();
+        try (var out = new JsonWriter(sw)) {
+            out.beginObject();
+            out.name("op").value("put");
+            out.name("value");
+            GsonUtil.compactGson.toJson(value, elementType, out);
+            out.endObject();
+        }
+        return sw.toString();
+    }
+
+    private String deleteRecord(UUID id) throws IOException {
+        var sw = new StringWriter();
+        try (var out = new JsonWriter(sw)) {
+            out.beginObject();
+            out.name("op").value("delete");
+            out.name("uuid").value(id.toString());
+            out.endObject();
+        }
+        return sw.toString();
+    }
+
+    /**
+     * @return 当前日志中的记录数
+     */
+    int size() {
+        return records;
+    }
+
+    /**
+     * 轮换日志, 当前日志转为待合并日志, 之后的记录写入新的日志<br />
+     * 调用方需保证轮换时没有并发写入
+     */
+    void rotate() {
+        close();
+        try {
+            if (Files.notExists(path)) {
+                return;
+            }
+            if (Files.exists(compactingPath)) {
+                // 上一次合并失败, 待合并日志还没有写入快照, 不能覆盖
+                Files.write(compactingPath, Files.readAllBytes(path), StandardOpenOption.APPEND);
+                Files.delete(path);
+            } else {
+                Files.move(path, compactingPath);
+            }
+        } catch (IOException e) {
+            MaidNana.INSTANCE.getLogger().error("无法轮换日志 " + path, e);
+            throw new RuntimeException(e);
+        }
+        records = 0;
+    }
+
+    /**
+     * 快照已写入, 删除待合并日志
+     */
+    void completeRotation() {
+        try {
+            Files.deleteIfExists(compactingPath);
+        } catch (IOException e) {
+            MaidNana.INSTANCE.getLogger().error("无法删除 " + compactingPath, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            MaidNana.INSTANCE.getLogger().error("无法关闭 " + path, e);
+        }
+        writer = null;
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
+import com.github.nanoyou.maidnana.entity.Identifiable;
+import com.github.nanoyou.maidnana.util.GsonUtil;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 每种实体一个 JSON 文件的存储引擎<br />
+ * 开启日志模式时每批修改追加写入日志, 日志在后台合并进数据文件; 否则每次修改重写整个数据文件
+ *
+ * @param <T> 实体类型
+ */
+public class JsonFileEngine<T extends Identifiable> implements StorageEngine<T> {
+    /**
+     * 后台合并日志的线程, 所有引擎共用
+     */
+    private static final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var t = new Thread(r, "MaidNana-Compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Path path;
+    /**
+     * 数据文件的类型, 即实体的集合
+     */
+    private final Type type;
+    private final Class<T> entityType;
+    /**
+     * 变更日志, 未开启日志模式时为 null, 受 this 保护
+     */
+    private final Journal<T> journal;
+    private final AtomicBoolean compactionPending = new AtomicBoolean(false);
+    /**
+     * 串行化日志合并, 不与写入日志的锁混用, 合并期间不阻塞写入
+     */
+    private final Object compactLock = new Object();
+    /**
+     * Dao 当前的全部值, 由 start 设置
+     */
+    private volatile Supplier<List<T>> snapshot = List::of;
+
+    /**
+     * @param path       数据文件
+     * @param type       数据文件的类型, 即实体的集合
+     * @param entityType 实体类型
+     */
+    public JsonFileEngine(Path path, Type type, Class<T> entityType) {
+        this.path = path;
+        this.type = type;
+        this.entityType = entityType;
+        if (MaidNanaConstant.JOURNAL_ENABLED) {
+            journal = new Journal<>(path.resolveSibling(path.getFileName() + ".journal"), entityType);
+        } else {
+            journal = null;
+        }
+    }
+
+    /**
+     * 先重放日志得到被修改过的值, 再逐个读取数据文件中的实体, 跳过被日志覆盖的部分<br />
+     * 加载期间内存只与日志和单个实体的大小有关, 数据文件不存在时创建空文件
+     */
+    @Override
+    public void load(Consumer<T> action) {
+        if (Files.notExists(path)) {
+            MaidNana.INSTANCE.getLogger().info("正在创建默认配置文件 " + path.toString());
+            save(List.of());
+        }
+        // UUID -> 日志中最后的值, 值为 null 表示删除
+        var overlay = new LinkedHashMap<UUID, T>();
+        if (journal != null) {
+            synchronized (this) {
+                journal.replay(v -> overlay.put(v.getUuid(), v), id -> overlay.put(id, null));
+            }
+        }
+        var adapter = GsonUtil.compactGson.getAdapter(entityType);
+        try (var in = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else {
+                in.beginArray();
+                while (in.hasNext()) {
+                    var v = adapter.read(in);
+                    if (v != null && !overlay.containsKey(v.getUuid())) {
+                        action.accept(v);
+                    }
+                }
+                in.endArray();
+            }
+        } catch (IOException | IllegalStateException | JsonParseException e) {
+            MaidNana.INSTANCE.getLogger().error("无法读入 " + path.toString(), e);
+            throw new RuntimeException(e);
+        }
+        overlay.values().stream().filter(Objects::nonNull).forEach(action);
+    }
+
+    /**
+     * 数据文件没有顺序, 范围查询需要遍历全部值
+     */
+    @Override
+    public void scan(UUID from, UUID to, Consumer<T> action) {
+        var lo = from.toString();
+        var hi = to.toString();
+        snapshot.get().stream()
+                .filter(v -> {
+                    var id = v.getUuid().toString();
+                    return id.compareTo(lo) >= 0 && id.compareTo(hi) <= 0;
+                })
+                .sorted(Comparator.comparing(v -> v.getUuid().toString()))
+                .forEach(action);
+    }
+
+    /**
+     * 日志的一批记录一次写入并刷新, 重放时损坏的记录及其后的记录会被忽略;
+     * 未开启日志模式时重写整个数据文件, 写入临时文件后替换
+     */
+    @Override
+    public synchronized void commit(Map<UUID, T> changes) {
+        if (journal == null) {
+            save(snapshot.get());
+            return;
+        }
+        journal.append(changes);
+        if (journal.size() >= MaidNanaConstant.JOURNAL_COMPACT_THRESHOLD
+                && compactionPending.compareAndSet(false, true)) {
+            compactor.execute(this::compact);
+        }
+    }
+
+    /**
+     * 启动时先把上次遗留的日志合并进数据文件, 之后定期合并
+     */
+    @Override
+    public void start(Supplier<List<T>> snapshot) {
+        this.snapshot = snapshot;
+        if (journal == null) {
+            return;
+        }
+        compact();
+        compactor.scheduleWithFixedDelay(this::compact,
+                MaidNanaConstant.JOURNAL_COMPACT_INTERVAL_SECONDS,
+                MaidNanaConstant.JOURNAL_COMPACT_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * 将全部值写入数据文件, 先写临时文件再替换, 避免写入一半时损坏原文件
+     *
+     * @param values 全部值
+     */
+    private void save(Collection<T> values) {
+        var jsonStr = GsonUtil.compactGson.toJson(values, type);
+        var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, jsonStr, StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            MaidNana.INSTANCE.getLogger().error("无法写入 " + path.toString(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 将日志合并进数据文件<br />
+     * 只在轮换日志时持有锁, 写数据文件期间不阻塞写入;
+     * 修改先发布到快照再写入日志, 因此轮换之后取得的快照包含旧日志中的全部修改
+     */
+    private void compact() {
+        synchronized (compactLock) {
+            compactionPending.set(false);
+            synchronized (this) {
+                if (journal.size() == 0) {
+                    return;
+                }
+                journal.rotate();
+            }
+            try {
+                save(snapshot.get());
+                journal.completeRotation();
+            } catch (RuntimeException e) {
+                // 待合并日志保留, 下一次合并或启动时会重新处理
+                MaidNana.INSTANCE.getLogger().error("合并日志失败", e);
+            }
+        }
+    }
+
+    /**
+     * 迁移到其他引擎后, 将数据文件与日志重命名为 .migrated, 不再读取
+     */
+    void archive() {
+        var files = new ArrayList<Path>();
+        files.add(path);
+        var journalPath = path.resolveSibling(path.getFileName() + ".journal");
+        files.add(journalPath);
+        files.add(journalPath.resolveSibling(journalPath.getFileName() + ".compacting"));
+        try {
+            for (var file : files) {
+                if (Files.exists(file)) {
+                    Files.move(file, file.resolveSibling(file.getFileName() + ".migrated"),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            MaidNana.INSTANCE.getLogger().error("无法重命名 " + path.toString(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 合并剩余日志
+     */
+    @Override
+    public void close() {
+        if (journal == null) {
+            return;
+        }
+        compact();
+        synchronized (this) {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.entity.Identifiable;
+import com.github.nanoyou.maidnana.util.GsonUtil;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 基于 H2 MVStore 的存储引擎<br />
+ * 每个 Dao 一个数据文件, 文件中一张 UUID -> JSON 的有序表,
+ * 每次修改只写入被修改的值, 不需要重写整个文件或合并日志<br />
+ * 自动提交关闭, 一批修改在一次 commit 中生效
+ *
+ * @param <T> 实体类型
+ */
+public class MVStoreEngine<T extends Identifiable> implements StorageEngine<T> {
+    private final MVStore store;
+    private final MVMap<String, String> map;
+    private final Class<T> entityType;
+
+    /**
+     * @param file       数据文件, 由本引擎独占
+     * @param name       表名
+     * @param entityType 实体类型
+     */
+    public MVStoreEngine(Path file, String name, Class<T> entityType) {
+        this.entityType = entityType;
+        MaidNana.INSTANCE.getLogger().info("正在打开 " + file.toString());
+        this.store = new MVStore.Builder()
+                .fileName(file.toString())
+                .autoCommitDisabled()
+                .open();
+        this.map = store.openMap(name);
+    }
+
+    /**
+     * @return 表中没有任何值
+     */
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    private T decode(String json) {
+        return GsonUtil.compactGson.fromJson(json, entityType);
+    }
+
+    @Override
+    public void load(Consumer<T> action) {
+        for (var json : map.values()) {
+            action.accept(decode(json));
+        }
+    }
+
+    /**
+     * 表按键有序, 从起点开始顺序读取, 不需要遍历全部值
+     */
+    @Override
+    public void scan(UUID from, UUID to, Consumer<T> action) {
+        var hi = to.toString();
+        var cursor = map.cursor(from.toString());
+        while (cursor.hasNext()) {
+            var key = cursor.next();
+            if (key.compareTo(hi) > 0) {
+                break;
+            }
+            action.accept(decode(cursor.getValue()));
+        }
+    }
+
+    @Override
+    public synchronized void commit(Map<UUID, T> changes) {
+        try {
+            changes.forEach((id, value) -> {
+                if (value == null) {
+                    map.remove(id.toString());
+                } else {
+                    map.put(id.toString(), GsonUtil.compactGson.toJson(value, entityType));
+                }
+            });
+            store.commit();
+        } catch (RuntimeException e) {
+            // 放弃尚未提交的修改, store 回到上一次提交的状态
+            store.rollback();
+            MaidNana.INSTANCE.getLogger().error("无法写入 " + map.getName(), e);
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        store.close();
+    }
+}
@@ -0,0 +1,255 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
+import com.github.nanoyou.maidnana.entity.OutboxEntry;
+import com.github.nanoyou.maidnana.entity.OutboxFire;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发件箱<br />
+ * 每条待发送的消息在发送前追加写入 outbox.journal, 发送成功后写入删除记录;
+ * 一次触发的公告内容只写入 outbox-fire.journal 一次, 各群的消息通过 fireID 引用, 没有消息引用后删除;
+ * 多次失败的消息移入 outbox-dead.journal, 不再重试, 死信按 {@link MaidNanaConstant#OUTBOX_DEAD_MAX_SIZE} 与
+ * {@link MaidNanaConstant#OUTBOX_DEAD_MAX_AGE_DAYS} 淘汰<br />
+ * 启动时重放日志即得到上次未发送完的消息; 日志记录数达到 {@link MaidNanaConstant#JOURNAL_COMPACT_THRESHOLD}
+ * 时只保留待发送的消息重写日志
+ */
+public class OutboxDao {
+    private static OutboxDao instance = null;
+
+    public static synchronized OutboxDao getInstance() {
+        if (instance == null) {
+            instance = new OutboxDao();
+        }
+        return instance;
+    }
+
+    private final Journal<OutboxEntry> journal;
+    private final Journal<OutboxEntry> deadJournal;
+    private final Journal<OutboxFire> fireJournal;
+    /**
+     * 待发送的消息, 受 this 保护
+     */
+    private final Map<UUID, OutboxEntry> pending = new LinkedHashMap<>();
+    private final Map<UUID, OutboxEntry> dead = new LinkedHashMap<>();
+    /**
+     * 待发送的消息引用的触发
+     */
+    private final Map<UUID, OutboxFire> fires = new HashMap<>();
+    /**
+     * 触发ID -> 引用该触发的待发送消息数
+     */
+    private final Map<UUID, Integer> fireRefs = new HashMap<>();
+
+    private OutboxDao() {
+        this(MaidNana.INSTANCE.getDataFolderPath());
+    }
+
+    /**
+     * @param folder 日志所在的目录
+     */
+    OutboxDao(Path folder) {
+        journal = new Journal<>(folder.resolve("outbox.journal"), OutboxEntry.class);
+        deadJournal = new Journal<>(folder.resolve("outbox-dead.journal"), OutboxEntry.class);
+        fireJournal = new Journal<>(folder.resolve("outbox-fire.journal"), OutboxFire.class);
+        journal.replay(pending);
+        deadJournal.replay(dead);
+        fireJournal.replay(fires);
+        pending.values().forEach(e -> fireRefs.merge(e.getFireID(), 1, Integer::sum));
+        // 已没有消息引用的触发在合并时丢弃
+        fires.keySet().retainAll(fireRefs.keySet());
+        compact();
+        compactFires();
+        expireDead();
+        compactDead();
+    }
+
+    /**
+     * @return 全部待发送的消息
+     */
+    public synchronized List<OutboxEntry> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * 记录一次触发与它的全部消息, 先写入触发再写入消息, 每个日志只刷新一次磁盘
+     *
+     * @param fire    触发, 保存公告内容
+     * @param entries 消息, fireID 为该触发
+     */
+    public synchronized void add(OutboxFire fire, Collection<OutboxEntry> entries) {
+        fireJournal.append(Map.of(fire.getUuid(), fire));
+        fires.put(fire.getUuid(), fire);
+        var changes = new LinkedHashMap<UUID, OutboxEntry>();
+        entries.forEach(e -> changes.put(e.getUuid(), e));
+        journal.append(changes);
+        pending.putAll(changes);
+        fireRefs.merge(fire.getUuid(), changes.size(), Integer::sum);
+    }
+
+    /**
+     * 获取消息的公告内容
+     *
+     * @param entry 消息
+     * @return 公告内容, 触发已不存在时返回 null
+     */
+    public synchronized String getText(OutboxEntry entry) {
+        var fire = fires.get(entry.getFireID());
+        return fire == null ? null : fire.getText();
+    }
+
+    /**
+     * 更新消息, 如失败次数
+     *
+     * @param entry 消息
+     */
+    public synchronized void update(OutboxEntry entry) {
+        if (!pending.containsKey(entry.getUuid())) {
+            return;
+        }
+        journal.append(Map.of(entry.getUuid(), entry));
+        pending.put(entry.getUuid(), entry);
+    }
+
+    /**
+     * 消息已发送
+     *
+     * @param id 消息ID
+     */
+    public synchronized void ack(UUID id) {
+        var entry = pending.remove(id);
+        if (entry == null) {
+            return;
+        }
+        remove(id);
+        release(entry.getFireID());
+    }
+
+    /**
+     * 消息不再重试, 移入死信
+     *
+     * @param entry 消息
+     */
+    public synchronized void kill(OutboxEntry entry) {
+        if (!pending.containsKey(entry.getUuid())) {
+            return;
+        }
+        // 死信自带公告内容, 不依赖触发是否还存在
+        var d = entry.copy();
+        d.setText(getText(entry));
+        d.setFireID(null);
+        pending.remove(entry.getUuid());
+        deadJournal.append(Map.of(d.getUuid(), d));
+        dead.put(d.getUuid(), d);
+        remove(d.getUuid());
+        release(entry.getFireID());
+        expireDead();
+        if (deadJournal.size() >= MaidNanaConstant.JOURNAL_COMPACT_THRESHOLD) {
+            compactDead();
+        }
+    }
+
+    /**
+     * 移除超过保留时间或超出数量上限的死信, 死信按移入顺序排列, 从最早的开始移除<br />
+     * 只从内存中移除, 日志在下一次合并时重写
+     */
+    private void expireDead() {
+        var deadline = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MaidNanaConstant.OUTBOX_DEAD_MAX_AGE_DAYS);
+        var it = dead.values().iterator();
+        while (it.hasNext()) {
+            var e = it.next();
+            if (dead.size() <= MaidNanaConstant.OUTBOX_DEAD_MAX_SIZE && e.getCreatedAt() >= deadline) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * 引用触发的消息减少一条, 没有消息引用后删除触发
+     *
+     * @param fireID 触发ID
+     */
+    private void release(UUID fireID) {
+        var refs = fireRefs.merge(fireID, -1, Integer::sum);
+        if (refs > 0) {
+            return;
+        }
+        fireRefs.remove(fireID);
+        if (fires.remove(fireID) == null) {
+            return;
+        }
+        var changes = new HashMap<UUID, OutboxFire>();
+        changes.put(fireID, null);
+        fireJournal.append(changes);
+        if (fireJournal.size() >= MaidNanaConstant.JOURNAL_COMPACT_THRESHOLD) {
+            compactFires();
+        }
+    }
+
+    private void remove(UUID id) {
+        var changes = new HashMap<UUID, OutboxEntry>();
+        changes.put(id, null);
+        journal.append(changes);
+        if (journal.size() >= MaidNanaConstant.JOURNAL_COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * @return 死信数
+     */
+    public synchronized int getDeadCount() {
+        return dead.size();
+    }
+
+    /**
+     * @return 待发送的消息数
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 只保留待发送的消息重写日志
+     */
+    private void compact() {
+        journal.rotate();
+        if (!pending.isEmpty()) {
+            journal.append(pending);
+        }
+        journal.completeRotation();
+    }
+
+    /**
+     * 只保留仍被引用的触发重写触发日志
+     */
+    private void compactFires() {
+        fireJournal.rotate();
+        if (!fires.isEmpty()) {
+            fireJournal.append(fires);
+        }
+        fireJournal.completeRotation();
+    }
+
+    /**
+     * 只保留现有的死信重写死信日志
+     */
+    private void compactDead() {
+        deadJournal.rotate();
+        if (!dead.isEmpty()) {
+            deadJournal.append(dead);
+        }
+        deadJournal.completeRotation();
+    }
+
+    public synchronized void close() {
+        journal.close();
+        deadJournal.close();
+        fireJournal.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.entity.Session;
+import com.github.nanoyou.maidnana.util.GsonUtil;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 会话快照的读写<br />
+ * 会话可以丢失, 因此整体写入快照, 不记录日志; 文件损坏时视为没有会话
+ */
+public class SessionDao {
+    private static final SessionDao instance = new SessionDao();
+    private static final Type type = new TypeToken<List<Session>>(){}.getType();
+
+    public static SessionDao getInstance() {
+        return instance;
+    }
+
+    public Path getPath() {
+        return MaidNana.INSTANCE.getDataFolderPath().resolve("sessions.json");
+    }
+
+    /**
+     * 读入会话
+     *
+     * @return 全部会话, 文件不存在或已损坏时返回空列表
+     */
+    public List<Session> load() {
+        if (Files.notExists(getPath())) {
+            return List.of();
+        }
+        try {
+            List<Session> r = GsonUtil.compactGson.fromJson(Files.readString(getPath(), StandardCharsets.UTF_8), type);
+            return r == null ? List.of() : r;
+        } catch (IOException | JsonParseException e) {
+            MaidNana.INSTANCE.getLogger().warning("无法读入 " + getPath() + ", 忽略已保存的会话");
+            return List.of();
+        }
+    }
+
+    /**
+     * 写入全部会话, 先写临时文件再替换
+     *
+     * @param sessions 全部会话
+     */
+    public void save(Collection<Session> sessions) {
+        var tmp = getPath().resolveSibling(getPath().getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, GsonUtil.compactGson.toJson(sessions, type), StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, getPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, getPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            MaidNana.INSTANCE.getLogger().error("无法写入 " + getPath(), e);
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.entity.Identifiable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Dao 的存储引擎<br />
+ * Dao 在内存中保存全部值的快照, 引擎只负责启动时读出全部值与持久化每一批修改;
+ * 实现见 {@link JsonFileEngine} 与 {@link MVStoreEngine}, 由 {@link com.github.nanoyou.maidnana.constant.MaidNanaConstant#STORAGE_ENGINE} 选择
+ *
+ * @param <T> 实体类型
+ */
+public interface StorageEngine<T extends Identifiable> {
+    /**
+     * 逐个读出全部值
+     *
+     * @param action 对每个值的操作
+     */
+    void load(Consumer<T> action);
+
+    /**
+     * 按 UUID 字符串顺序读出区间内的值
+     *
+     * @param from   起始 UUID, 包含
+     * @param to     结束 UUID, 包含
+     * @param action 对每个值的操作
+     */
+    void scan(UUID from, UUID to, Consumer<T> action);
+
+    /**
+     * 在一个事务中提交一批修改, 要么全部生效, 要么全部不生效<br />
+     * 调用时 Dao 已发布包含这些修改的快照
+     *
+     * @param changes UUID -> 新的值, 值为 null 表示删除
+     */
+    void commit(Map<UUID, T> changes);
+
+    /**
+     * 在一个事务中写入单个值
+     *
+     * @param value 值
+     */
+    default void put(T value) {
+        commit(Map.of(value.getUuid(), value));
+    }
+
+    /**
+     * 在一个事务中删除单个值
+     *
+     * @param id UUID
+     */
+    default void delete(UUID id) {
+        var changes = new HashMap<UUID, T>();
+        changes.put(id, null);
+        commit(changes);
+    }
+
+    /**
+     * Dao 构造完成后、第一次写入或关闭前调用, 引擎可借此开始后台维护
+     *
+     * @param snapshot 返回 Dao 当前的全部值
+     */
+    default void start(Supplier<List<T>> snapshot) {
+    }
+
+    /**
+     * 关闭引擎, 调用前 Dao 已写入全部修改
+     */
+    void close();
+}
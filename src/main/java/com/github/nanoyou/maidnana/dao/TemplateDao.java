@@ -9,11 +9,11 @@ import java.nio.file.Path;
 import java.util.Collection;
 
 public class TemplateDao extends AliasDao<Template> {
-    private static TemplateDao instance = new TemplateDao();
+    private static TemplateDao instance = started(new TemplateDao());
 
     public static TemplateDao getInstance() {
         if (instance == null) {
-            instance = new TemplateDao();
+            instance = started(new TemplateDao());
         }
         return instance;
     }
@@ -0,0 +1,103 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.MaidNana;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟写入线程<br />
+ * 修改只标记为脏, 第一次标记后最多等待 interval 毫秒, 或脏数据达到 maxDirty 条时执行一次写入,
+ * 多次修改合并为一次写入
+ */
+class WriteBehindFlusher implements Runnable {
+    private final Runnable flushAction;
+    private final long intervalNanos;
+    private final int maxDirty;
+    private final Thread thread;
+    private int dirtyCount = 0;
+    private boolean closed = false;
+    /**
+     * 上一次写入失败, 等待完整的间隔后重试, 不因脏数据过多而立即重试
+     */
+    private boolean retrying = false;
+
+    /**
+     * @param name        线程名
+     * @param flushAction 写入操作
+     * @param interval    最长写入间隔(毫秒)
+     * @param maxDirty    脏数据达到该条数时立即写入
+     */
+    WriteBehindFlusher(String name, Runnable flushAction, long interval, int maxDirty) {
+        this.flushAction = flushAction;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+        this.maxDirty = maxDirty;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 标记有新的修改
+     *
+     * @param count 修改条数
+     */
+    synchronized void markDirty(int count) {
+        var first = dirtyCount == 0;
+        dirtyCount += count;
+        if (first || dirtyCount >= maxDirty) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (dirtyCount == 0 && !closed) {
+                        wait();
+                    }
+                    var deadline = System.nanoTime() + intervalNanos;
+                    long remaining;
+                    while ((retrying || dirtyCount < maxDirty) && !closed
+                            && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                    retrying = false;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+                dirtyCount = 0;
+            }
+            try {
+                flushAction.run();
+            } catch (RuntimeException e) {
+                // 写入操作已把修改放回, 重新标记为脏, 保证在一个间隔后重试, 而不是等到下一次修改
+                MaidNana.INSTANCE.getLogger().error("延迟写入失败, 稍后重试", e);
+                synchronized (this) {
+                    retrying = true;
+                    dirtyCount = Math.max(dirtyCount, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止写入线程, 并在当前线程写入剩余的修改
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAction.run();
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * 公告
@@ -24,4 +25,21 @@ public class Announcement implements Aliasable {
     private Body body;
     private boolean enabled;
     private List<Trigger> triggers;
+
+    /**
+     * 复制公告, 群列表, 触发器列表, 每个触发器与公告体都是新的对象, 修改副本不影响原公告<br />
+     * Dao 中的值会被其他线程无锁读取, 修改前需先复制
+     *
+     * @return 公告的副本
+     */
+    public Announcement copy() {
+        var r = new Announcement();
+        r.setUuid(uuid);
+        r.setAlias(alias);
+        r.setGroups(new ArrayList<>(groups));
+        r.setBody(body == null ? null : body.copy());
+        r.setEnabled(enabled);
+        r.setTriggers(triggers.stream().map(Trigger::copy).collect(Collectors.toCollection(ArrayList::new)));
+        return r;
+    }
 }
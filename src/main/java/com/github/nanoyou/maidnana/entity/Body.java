@@ -9,4 +9,9 @@ public interface Body {
      * @return The body string.
      */
     String getBodyString();
+
+    /**
+     * @return 公告体的副本, 修改副本不影响原公告体
+     */
+    Body copy();
 }
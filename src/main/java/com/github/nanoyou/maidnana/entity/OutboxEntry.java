@@ -0,0 +1,62 @@
+package com.github.nanoyou.maidnana.entity;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * 待发送的公告, 一次触发中发往一个群的消息
+ * Entity - OutboxEntry
+ */
+@Data
+public class OutboxEntry implements Identifiable {
+    private UUID uuid;
+    private UUID announcementID;
+    /**
+     * 发送的机器人, 记录时没有可用的机器人为 0, 发送时会重新选择
+     */
+    private long botID;
+    private long groupID;
+    /**
+     * 所属的触发, 公告内容保存在 {@link OutboxFire} 中
+     */
+    private UUID fireID;
+    /**
+     * 公告内容, 只有死信保存, 待发送的消息通过 fireID 引用
+     */
+    private String text;
+    /**
+     * 已失败的次数
+     */
+    private int attempts;
+    /**
+     * 因机器人离线而推迟的次数, 不计入失败次数, 只用于计算退避时间; 只保存在内存中, 重启后从 0 开始
+     */
+    private int offlineAttempts;
+    /**
+     * 创建时间(毫秒)
+     */
+    private long createdAt;
+    /**
+     * 最近一次失败的原因
+     */
+    private String lastError;
+
+    /**
+     * @return 副本
+     */
+    public OutboxEntry copy() {
+        var r = new OutboxEntry();
+        r.setUuid(uuid);
+        r.setAnnouncementID(announcementID);
+        r.setBotID(botID);
+        r.setGroupID(groupID);
+        r.setFireID(fireID);
+        r.setText(text);
+        r.setAttempts(attempts);
+        r.setOfflineAttempts(offlineAttempts);
+        r.setCreatedAt(createdAt);
+        r.setLastError(lastError);
+        return r;
+    }
+}
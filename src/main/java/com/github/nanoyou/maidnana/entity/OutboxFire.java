@@ -0,0 +1,23 @@
+package com.github.nanoyou.maidnana.entity;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * 公告的一次触发, 保存渲染好的公告内容, 发往各群的 {@link OutboxEntry} 通过 fireID 引用, 内容只写入一次
+ * Entity - OutboxFire
+ */
+@Data
+public class OutboxFire implements Identifiable {
+    private UUID uuid;
+    private UUID announcementID;
+    /**
+     * 触发时渲染好的公告内容, 重试时原样发送
+     */
+    private String text;
+    /**
+     * 创建时间(毫秒)
+     */
+    private long createdAt;
+}
@@ -18,4 +18,11 @@ public class PlainBody implements Body{
     public String getBodyString() {
         return content;
     }
+
+    @Override
+    public PlainBody copy() {
+        var r = new PlainBody();
+        r.setContent(content);
+        return r;
+    }
 }
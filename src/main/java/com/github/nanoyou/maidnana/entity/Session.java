@@ -0,0 +1,38 @@
+package com.github.nanoyou.maidnana.entity;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * 用户会话, 保存用户在多条命令之间的状态
+ * Entity - Session
+ */
+@Data
+public class Session {
+    private long userID;
+    /**
+     * 选择的公告
+     */
+    private UUID selectedAnnouncement;
+    /**
+     * 最近创建、修改或查看的模板
+     */
+    private UUID selectedTemplate;
+    /**
+     * 最后一次访问的时间(毫秒)
+     */
+    private long lastAccess;
+
+    /**
+     * @return 会话的副本
+     */
+    public Session copy() {
+        var r = new Session();
+        r.setUserID(userID);
+        r.setSelectedAnnouncement(selectedAnnouncement);
+        r.setSelectedTemplate(selectedTemplate);
+        r.setLastAccess(lastAccess);
+        return r;
+    }
+}
@@ -14,4 +14,15 @@ public class Template implements Aliasable{
     private String alias;
 
     private String template;
+
+    /**
+     * @return 模板的副本
+     */
+    public Template copy() {
+        var r = new Template();
+        r.setUuid(uuid);
+        r.setAlias(alias);
+        r.setTemplate(template);
+        return r;
+    }
 }
@@ -3,6 +3,7 @@ package com.github.nanoyou.maidnana.entity;
 import com.github.nanoyou.maidnana.service.TemplateService;
 import lombok.Data;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -35,22 +36,20 @@ public class TemplateBody implements Body{
      *
      * 腾讯会议号: 1145-5141-9198 (这么臭的会议号还有存在的必要么（恼）)
      * ---------------------
+     * 模板只在修改后编译一次, 见 {@link com.github.nanoyou.maidnana.util.template.CompiledTemplate}
      * @return The body string.
      */
     @Override
     public String getBodyString() {
-        var service = TemplateService.getInstance();
-        var template = service.get(templateID);
-        if(template.isEmpty()) return "";
-
-        var bodyString = template.get().getTemplate();
-        for (Map.Entry<String, String> entry : var.entrySet())
-            bodyString = bodyString.replaceAll(
-                    "\\$"+entry.getKey()+"\\$",entry.getValue());
-
-        // 若还有变量为没被赋值, 则替换为空
-        bodyString = bodyString.replaceAll("\\$.+\\$", "");
+        // 未赋值的变量替换为空
+        return TemplateService.getInstance().render(templateID, var).orElse("");
+    }
 
-        return bodyString;
+    @Override
+    public TemplateBody copy() {
+        var r = new TemplateBody();
+        r.setTemplateID(templateID);
+        r.setVar(var == null ? null : new HashMap<>(var));
+        return r;
     }
 }
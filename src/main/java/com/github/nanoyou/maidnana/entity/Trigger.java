@@ -13,4 +13,14 @@ public class Trigger implements Identifiable {
     private UUID uuid;
 
     private String cron;
+
+    /**
+     * @return 触发器的副本
+     */
+    public Trigger copy() {
+        var r = new Trigger();
+        r.setUuid(uuid);
+        r.setCron(cron);
+        return r;
+    }
 }
@@ -2,20 +2,25 @@ package com.github.nanoyou.maidnana.service;
 
 import com.github.nanoyou.maidnana.MaidNana;
 import com.github.nanoyou.maidnana.dao.AnnouncementDao;
+import com.github.nanoyou.maidnana.dao.ChangeEvent;
 import com.github.nanoyou.maidnana.dao.TemplateDao;
 import com.github.nanoyou.maidnana.entity.Announcement;
 import com.github.nanoyou.maidnana.entity.Body;
 import com.github.nanoyou.maidnana.entity.Template;
+import com.github.nanoyou.maidnana.entity.TemplateBody;
 import com.github.nanoyou.maidnana.entity.Trigger;
-import it.sauronsoftware.cron4j.InvalidPatternException;
-import it.sauronsoftware.cron4j.Scheduler;
+import com.github.nanoyou.maidnana.util.scheduler.CronExpression;
+import com.github.nanoyou.maidnana.util.scheduler.CronScheduler;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-import net.mamoe.mirai.Bot;
 import net.mamoe.mirai.Mirai;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 
 public class AnnouncementService {
     private final static AnnouncementService instance = new AnnouncementService();
@@ -25,63 +30,150 @@ public class AnnouncementService {
         return instance;
     }
 
-    private final Scheduler scheduler = new Scheduler();
-    private final List<String> tasks = new ArrayList<>();
+    /**
+     * 执行到期触发器的线程池
+     */
+    private final ExecutorService taskExecutor = Executors.newCachedThreadPool(r -> {
+        var t = new Thread(r, "MaidNana-Task");
+        t.setDaemon(true);
+        return t;
+    });
+    private final CronScheduler scheduler = new CronScheduler(taskExecutor);
+    /**
+     * 已调度的任务, 公告ID -> (触发器ID -> 任务), 受自身锁保护
+     */
+    private final Map<UUID, Map<UUID, ScheduledTask>> scheduled = new HashMap<>();
 
-    private void sendAnnouncement(Announcement ann) {
-        var logger = MaidNana.INSTANCE.getLogger();
+    /**
+     * 已调度的触发器
+     *
+     * @param cron   调度时使用的 cron 表达式
+     * @param taskID 调度器返回的任务ID
+     */
+    private record ScheduledTask(String cron, String taskID) {
+    }
 
-        Bot.getInstances().forEach(bot -> ann.getGroups().forEach(group -> {
-            logger.info("尝试获取组");
-            var g = bot.getGroup(group);
-            logger.info("获取完成");
-            if (g == null) return;
+    /**
+     * 交给 {@link DeliveryService} 并发发送, 不阻塞调用线程
+     *
+     * @param ann      公告
+     * @param priority 发送优先级
+     * @return 全部群发送完成后得到结果
+     */
+    private CompletableFuture<DeliveryReport> sendAnnouncement(Announcement ann, OutboundService.Priority priority) {
+        return DeliveryService.getInstance().deliver(ann, priority);
+    }
 
-            logger.info("尝试发送公告");
-            g.sendMessage(ann.getBody().getBodyString());
-        }));
+    /**
+     * 触发器到点, 发送时再读取公告, 因此修改公告内容或模板不需要重新调度
+     *
+     * @param announcementID 公告ID
+     */
+    private void fire(UUID announcementID) {
+        dao.get(announcementID)
+                .filter(this::isSchedulable)
+                .ifPresent(ann -> sendAnnouncement(ann, OutboundService.Priority.SCHEDULED));
     }
-    private void flushTasks() {
-        var logger = MaidNana.INSTANCE.getLogger();
 
-        logger.info("刷新任务");
-        synchronized ("scheduler") {
+    /**
+     * 公告可以被调度: 已启用, 有公告体、群与触发器, 且模板公告引用的模板存在
+     */
+    private boolean isSchedulable(Announcement ann) {
+        return ann.isEnabled()
+                && ann.getBody() != null
+                && !ann.getGroups().isEmpty()
+                && !ann.getTriggers().isEmpty()
+                && (!(ann.getBody() instanceof TemplateBody b)
+                    || b.getTemplateID() != null && TemplateService.getInstance().get(b.getTemplateID()).isPresent());
+    }
 
-            if (scheduler.isStarted()) {
-                logger.info("关闭现有的任务");
-                tasks.forEach(scheduler::deschedule);
-                scheduler.stop();
-                tasks.clear();
-            }
+    /**
+     * 模板被新建或删除时, 通过索引只重新对比引用该模板的公告<br />
+     * 修改模板不影响调度, 发送时会读取最新的模板, 渲染缓存由 {@link TemplateService} 按模板失效
+     *
+     * @param events 模板的变更事件
+     */
+    private void onTemplatesChanged(List<ChangeEvent<Template>> events) {
+        events.stream()
+                .filter(e -> e.getType() != ChangeEvent.Type.UPDATED)
+                .forEach(e -> dao.getByTemplate(e.getUuid()).forEach(ann -> reconcile(ann.getUuid())));
+    }
 
-            Bot.getInstances().forEach(bot -> {
-                logger.info("Bot: " + bot.getId());
+    /**
+     * 对比公告当前的触发器与已调度的任务, 只调度新增的, 取消被删除或 cron 被修改的<br />
+     * 调度器始终保持运行, 其他公告的任务不受影响
+     *
+     * @param announcementID 公告ID
+     */
+    private void reconcile(UUID announcementID) {
+        var logger = MaidNana.INSTANCE.getLogger();
+        synchronized (scheduled) {
+            // 在锁内读取公告, 并发的对比按顺序进行, 后执行的一定读到不旧于先执行的版本
+            var desired = new HashMap<UUID, String>();
+            dao.get(announcementID)
+                    .filter(this::isSchedulable)
+                    .ifPresent(ann -> ann.getTriggers().forEach(t -> desired.put(t.getUuid(), t.getCron())));
+            var current = scheduled.computeIfAbsent(announcementID, k -> new HashMap<>());
+            current.entrySet().removeIf(e -> {
+                if (e.getValue().cron().equals(desired.get(e.getKey()))) {
+                    return false;
+                }
+                scheduler.deschedule(e.getValue().taskID());
+                logger.info("取消触发器: " + e.getKey() + ", 公告: " + announcementID);
+                return true;
             });
-
-            AnnouncementDao.getInstance()
-                    .getAll().stream()
-                    .filter(ann -> ann.isEnabled()
-                            && ann.getBody() != null
-                            && !ann.getGroups().isEmpty()
-                            && !ann.getTriggers().isEmpty()
-                    ).forEach(ann -> ann.getTriggers().forEach(trigger -> {
-                        try {
-                            logger.info("添加公告: " + ann.getUuid());
-                            logger.info("群: " + ann.getGroups());
-                            var id = scheduler.schedule(trigger.getCron(), () -> sendAnnouncement(ann));
-                            tasks.add(id);
-                        } catch (InvalidPatternException ignore) {
-                            logger.warning("cron 表达式格式错误: " + trigger.getCron());
-                        }
-                    }));
-
-            scheduler.start();
+            desired.forEach((triggerID, cron) -> {
+                if (current.containsKey(triggerID)) {
+                    return;
+                }
+                try {
+                    var taskID = scheduler.schedule(CronExpression.compile(cron), () -> fire(announcementID));
+                    current.put(triggerID, new ScheduledTask(cron, taskID));
+                    logger.info("调度触发器: " + triggerID + ", 公告: " + announcementID);
+                } catch (IllegalArgumentException e) {
+                    logger.warning("cron 表达式格式错误: " + cron + ", " + e.getMessage());
+                }
+            });
+            if (current.isEmpty()) {
+                scheduled.remove(announcementID);
+            }
         }
     }
+
     public void init() {
-        flushTasks();
-        AnnouncementDao.getInstance().registerObserver(this::flushTasks);
-        TemplateDao.getInstance().registerObserver(this::flushTasks);
+        // 先订阅再全量调度, 期间的修改会被再次对比; 每次对比都在锁内读取最新的公告, 先后顺序不影响结果
+        dao.registerObserver(events -> events.forEach(e -> reconcile(e.getUuid())));
+        TemplateDao.getInstance().registerObserver(this::onTemplatesChanged);
+        dao.getAll().forEach(ann -> reconcile(ann.getUuid()));
+        scheduler.start();
+        DeliveryService.getInstance().init();
+    }
+
+    /**
+     * 停止调度器, 并等待已开始的发送完成
+     */
+    public void shutdown() {
+        scheduler.stop();
+        taskExecutor.shutdown();
+        DeliveryService.getInstance().shutdown();
+        OutboundService.getInstance().shutdown();
+    }
+
+    /**
+     * 在一次批量操作中修改公告的副本, 读取与写回之间不会被其他修改打断
+     *
+     * @param announcementID 公告ID
+     * @param modifier       修改公告副本, 返回 false 表示放弃修改
+     * @return 修改后的公告, 未找到或放弃修改返回空
+     */
+    private Optional<Announcement> update(UUID announcementID, Predicate<Announcement> modifier) {
+        return dao.batch(b -> b.get(announcementID)
+                .map(Announcement::copy)
+                .filter(modifier)
+                .map(a -> {
+                    b.modify(a);
+                    return a;
+                }));
     }
 
     /**
@@ -89,23 +181,45 @@ public class AnnouncementService {
      * @return 创建的公告
      */
     public Announcement create() {
+        return create(false);
+    }
+
+    /**
+     * 创建公告
+     * @param enabled 是否启用
+     * @return 创建的公告
+     */
+    public Announcement create(boolean enabled) {
         var ansment = new Announcement();
         ansment.setUuid(UUID.randomUUID());
+        ansment.setEnabled(enabled);
         dao.add(ansment);
         return ansment;
     }
+
     /**
      * 创建公告
      * @param alias 公告别名
      * @return 创建的公告, 若别名已存在返回空
      */
     public Optional<Announcement> create(String alias) {
+        return create(alias, false);
+    }
+
+    /**
+     * 创建公告
+     * @param alias 公告别名
+     * @param enabled 是否启用
+     * @return 创建的公告, 若别名已存在返回空
+     */
+    public Optional<Announcement> create(String alias, boolean enabled) {
         if (dao.get(alias).isPresent()) {
             return Optional.empty();
         }
         var ann = new Announcement();
         ann.setUuid(UUID.randomUUID());
         ann.setAlias(alias);
+        ann.setEnabled(enabled);
         dao.add(ann);
         return Optional.of(ann);
     }
@@ -143,16 +257,7 @@ public class AnnouncementService {
      * @param groupID 分组ID
      */
     public Optional<Announcement> addGroup(UUID announcementID, long groupID) {
-        var ansment = get(announcementID);
-        if(ansment.isPresent()){
-            var groups = ansment.get().getGroups();
-            if (groups.stream().noneMatch(e -> e.equals(groupID)))
-                groups.add(groupID);
-
-            ansment.get().setGroups(groups);
-            dao.modify(ansment.get());
-        }
-        return ansment;
+        return addGroups(announcementID, List.of(groupID));
     }
     /**
      * 增加分组
@@ -160,16 +265,23 @@ public class AnnouncementService {
      * @param groupID 分组ID
      */
     public Optional<Announcement> addGroup(String alias, long groupID) {
-        var ansment = get(alias);
-        if(ansment.isPresent()){
-            var groups = ansment.get().getGroups();
-            if (groups.stream().noneMatch(e -> e.equals(groupID)))
-                groups.add(groupID);
-
-            ansment.get().setGroups(groups);
-            dao.modify(ansment.get());
-        }
-        return ansment;
+        return get(alias).flatMap(a -> addGroup(a.getUuid(), groupID));
+    }
+
+    /**
+     * 增加多个分组, 只保存一次
+     * @param announcementID 公告ID
+     * @param groupIDs 分组ID
+     * @return 修改后的公告, 未找到返回空
+     */
+    public Optional<Announcement> addGroups(UUID announcementID, Collection<Long> groupIDs) {
+        return update(announcementID, a -> {
+            groupIDs.forEach(groupID -> {
+                if (!a.getGroups().contains(groupID))
+                    a.getGroups().add(groupID);
+            });
+            return true;
+        });
     }
 
     /**
@@ -179,17 +291,7 @@ public class AnnouncementService {
      * @return 被删除分组的公告, 未找到返回空
      */
     public Optional<Announcement> removeGroup(UUID announcementID, long groupID) {
-        var ansment = get(announcementID);
-        if(ansment.isPresent()){
-            var groups = ansment.get().getGroups();
-            if (groups.stream().noneMatch(e -> e.equals(groupID)))
-                return Optional.empty();
-
-            groups.removeIf(e -> e.equals(groupID));
-            ansment.get().setGroups(groups);
-            dao.modify(ansment.get());
-        }
-        return ansment;
+        return removeGroups(announcementID, List.of(groupID));
     }
     /**
      * 删除分组
@@ -199,17 +301,17 @@ public class AnnouncementService {
      * @return {@link Optional}<{@link Announcement}>
      */
     public Optional<Announcement> removeGroup(String alias, long groupID) {
-        var ansment = get(alias);
-        if(ansment.isPresent()){
-            var groups = ansment.get().getGroups();
-            if (groups.stream().noneMatch(e -> e.equals(groupID)))
-                return Optional.empty();
-
-            groups.removeIf(e -> e.equals(groupID));
-            ansment.get().setGroups(groups);
-            dao.modify(ansment.get());
-        }
-        return ansment;
+        return get(alias).flatMap(a -> removeGroup(a.getUuid(), groupID));
+    }
+
+    /**
+     * 删除多个分组, 只保存一次
+     * @param announcementID 公告ID
+     * @param groupIDs 分组ID
+     * @return 修改后的公告, 未找到公告或一个分组都没有删除时返回空
+     */
+    public Optional<Announcement> removeGroups(UUID announcementID, Collection<Long> groupIDs) {
+        return update(announcementID, a -> a.getGroups().removeIf(groupIDs::contains));
     }
 
     /**
@@ -219,17 +321,11 @@ public class AnnouncementService {
      * @param trigger        触发器
      */
     public Optional<Announcement> addTrigger(UUID announcementID, Trigger trigger) {
-        var ansment = get(announcementID);
-        if(ansment.isPresent()){
-            var triggers = ansment.get().getTriggers();
-            if (triggers.stream().noneMatch(e -> e.equals(trigger)))
-                triggers.add(trigger);
-
-            ansment.get().setTriggers(triggers);
-            dao.modify(ansment.get());
-        }
-
-        return ansment;
+        return update(announcementID, a -> {
+            if (a.getTriggers().stream().noneMatch(e -> e.equals(trigger)))
+                a.getTriggers().add(trigger);
+            return true;
+        });
     }
     /**
      * 添加触发器
@@ -238,17 +334,7 @@ public class AnnouncementService {
      * @param trigger        触发器
      */
     public Optional<Announcement> addTrigger(String alias, Trigger trigger) {
-        var ansment = get(alias);
-        if(ansment.isPresent()){
-            var triggers = ansment.get().getTriggers();
-            if (triggers.stream().noneMatch(e -> e.equals(trigger)))
-                triggers.add(trigger);
-
-            ansment.get().setTriggers(triggers);
-            dao.modify(ansment.get());
-        }
-
-        return ansment;
+        return get(alias).flatMap(a -> addTrigger(a.getUuid(), trigger));
     }
 
     /**
@@ -259,17 +345,7 @@ public class AnnouncementService {
      * @return 修改后的公告，若找不到则返回空容器？
      */
     public Optional<Announcement> removeTrigger(UUID announcementID, UUID triggerID) {
-        var ansment = get(announcementID);
-        if(ansment.isPresent()){
-            var triggers = ansment.get().getTriggers();
-            if (triggers.stream().noneMatch(e -> e.getUuid().equals(triggerID)))
-                return Optional.empty();
-
-            triggers.removeIf(e->e.getUuid().equals(triggerID));
-            ansment.get().setTriggers(triggers);
-            dao.modify(ansment.get());
-        }
-        return ansment;
+        return removeTriggers(announcementID, List.of(triggerID));
     }
     /** 移除触发器
      *
@@ -278,17 +354,31 @@ public class AnnouncementService {
      * @return 修改后的公告，若找不到则返回空容器？
      */
     public Optional<Announcement> removeTrigger(String alias, UUID triggerID) {
-        var ansment = get(alias);
-        if(ansment.isPresent()){
-            var triggers = ansment.get().getTriggers();
-            if (triggers.stream().noneMatch(e -> e.getUuid().equals(triggerID)))
-                return Optional.empty();
-
-            triggers.removeIf(e->e.getUuid().equals(triggerID));
-            ansment.get().setTriggers(triggers);
-            dao.modify(ansment.get());
-        }
-        return ansment;
+        return get(alias).flatMap(a -> removeTrigger(a.getUuid(), triggerID));
+    }
+
+    /**
+     * 移除多个触发器, 只保存一次
+     *
+     * @param announcementID 公告ID
+     * @param triggerIDs     触发器ID
+     * @return 修改后的公告, 未找到公告或一个触发器都没有移除时返回空
+     */
+    public Optional<Announcement> removeTriggers(UUID announcementID, Collection<UUID> triggerIDs) {
+        return update(announcementID, a -> a.getTriggers().removeIf(e -> triggerIDs.contains(e.getUuid())));
+    }
+
+    /**
+     * 移除全部触发器
+     *
+     * @param announcementID 公告ID
+     * @return 修改后的公告, 未找到返回空
+     */
+    public Optional<Announcement> clearTriggers(UUID announcementID) {
+        return update(announcementID, a -> {
+            a.getTriggers().clear();
+            return true;
+        });
     }
 
     /**
@@ -297,12 +387,10 @@ public class AnnouncementService {
      * @param body 身体
      */
     public Optional<Announcement> setBody(UUID announcementID, Body body) {
-        var ansment = get(announcementID);
-        ansment.ifPresent(a ->{
+        return update(announcementID, a -> {
             a.setBody(body);
-            dao.modify(a);
+            return true;
         });
-        return ansment;
     }
     /**
      * 设置身体
@@ -310,12 +398,7 @@ public class AnnouncementService {
      * @param body 身体
      */
     public Optional<Announcement> setBody(String alias, Body body){
-        var ansment = get(alias);
-        ansment.ifPresent(a ->{
-            a.setBody(body);
-            dao.modify(a);
-        });
-        return ansment;
+        return get(alias).flatMap(a -> setBody(a.getUuid(), body));
     }
 
     /**
@@ -323,24 +406,17 @@ public class AnnouncementService {
      * @param announcementID 公告ID
      */
     public Optional<Announcement> enable(UUID announcementID) {
-        var ansment = get(announcementID);
-        ansment.ifPresent(a ->{
+        return update(announcementID, a -> {
             a.setEnabled(true);
-            dao.modify(a);
+            return true;
         });
-        return ansment;
     }
     /**
      * 启用公告
      * @param alias 别名捏
      */
     public Optional<Announcement> enable(String alias) {
-        var ansment = get(alias);
-        ansment.ifPresent(a ->{
-            a.setEnabled(true);
-            dao.modify(a);
-        });
-        return ansment;
+        return get(alias).flatMap(a -> enable(a.getUuid()));
     }
 
     /**
@@ -348,48 +424,65 @@ public class AnnouncementService {
      * @param announcementID 公告ID
      */
     public Optional<Announcement> disable(UUID announcementID) {
-        var ansment = get(announcementID);
-        ansment.ifPresent(a ->{
+        return update(announcementID, a -> {
             a.setEnabled(false);
-            dao.modify(a);
+            return true;
         });
-        return ansment;
     }
     /**
      * 禁用公告
      * @param alias 别名
      */
     public Optional<Announcement> disable(String alias) {
-        var ansment = get(alias);
-        ansment.ifPresent(a ->{
-            a.setEnabled(false);
-            dao.modify(a);
-        });
-        return ansment;
+        return get(alias).flatMap(a -> disable(a.getUuid()));
     }
 
     /**
      * 手动触发公告
      * @param announcementID 公告ID
-     * @return 成功返回 true, 未找到返回 false
+     * @return 发送完成后得到结果, 未找到返回空
      */
-    public boolean manualTrigger(UUID announcementID) {
-        var ann = get(announcementID);
-        if (ann.isEmpty())  return false;
-        sendAnnouncement(ann.get());
-        return true;
+    public Optional<CompletableFuture<DeliveryReport>> manualTrigger(UUID announcementID) {
+        return get(announcementID).map(ann -> sendAnnouncement(ann, OutboundService.Priority.MANUAL));
     }
 
     /**
      * 手动触发公告
      * @param alias 公告别名
-     * @return 成功返回 true, 未找到返回 false
+     * @return 发送完成后得到结果, 未找到返回空
+     */
+    public Optional<CompletableFuture<DeliveryReport>> manualTrigger(String alias) {
+        return get(alias).map(ann -> sendAnnouncement(ann, OutboundService.Priority.MANUAL));
+    }
+
+    /**
+     * 获取发送到指定群的公告, 通过索引查找, 不遍历全部公告
+     *
+     * @param groupID 群号
+     * @return 公告列表
+     */
+    public List<Announcement> getByGroup(long groupID) {
+        return dao.getByGroup(groupID);
+    }
+
+    /**
+     * 获取使用指定模板的公告, 通过索引查找, 不遍历全部公告
+     *
+     * @param templateID 模板ID
+     * @return 公告列表
+     */
+    public List<Announcement> getByTemplate(UUID templateID) {
+        return dao.getByTemplate(templateID);
+    }
+
+    /**
+     * 获取使用指定模板的公告数量
+     *
+     * @param templateID 模板ID
+     * @return 公告数量
      */
-    public boolean manualTrigger(String alias) {
-        var ann = get(alias);
-        if (ann.isEmpty())  return false;
-        sendAnnouncement(ann.get());
-        return true;
+    public int countByTemplate(UUID templateID) {
+        return dao.countByTemplate(templateID);
     }
 
     /**
@@ -0,0 +1,30 @@
+package com.github.nanoyou.maidnana.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * 一次公告发送的结果
+ */
+@Getter
+@AllArgsConstructor
+public class DeliveryReport {
+    private final UUID announcementID;
+    /**
+     * 需要发送的群数
+     */
+    private final int total;
+    private final int succeeded;
+    private final int failed;
+    /**
+     * 从开始发送到全部完成的耗时(毫秒)
+     */
+    private final long elapsedMillis;
+
+    @Override
+    public String toString() {
+        return "成功 " + succeeded + "/" + total + ", 失败 " + failed + ", 耗时 " + elapsedMillis + "ms";
+    }
+}
@@ -0,0 +1,226 @@
+package com.github.nanoyou.maidnana.service;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
+import com.github.nanoyou.maidnana.dao.OutboxDao;
+import com.github.nanoyou.maidnana.entity.Announcement;
+import com.github.nanoyou.maidnana.entity.OutboxEntry;
+import com.github.nanoyou.maidnana.entity.OutboxFire;
+import net.mamoe.mirai.Bot;
+import net.mamoe.mirai.message.data.Message;
+import net.mamoe.mirai.message.data.MessageUtils;
+import net.mamoe.mirai.message.data.PlainText;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 公告投递<br />
+ * 每个群的发送先记录到 {@link OutboxDao}, 再作为独立的消息放入 {@link OutboundService} 的发送队列,
+ * 由其限速并并发发送; 发送成功后确认, 失败后按指数退避重试, 超过
+ * {@link MaidNanaConstant#OUTBOX_MAX_ATTEMPTS} 次移入死信<br />
+ * 调用方立即返回, 通过返回的 Future 获取本次发送的最终结果; 重启后继续发送上次未完成的消息
+ */
+public class DeliveryService {
+    private final static DeliveryService instance = new DeliveryService();
+
+    public static DeliveryService getInstance() {
+        return instance;
+    }
+
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var t = new Thread(r, "MaidNana-Retry");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean closed = false;
+
+    /**
+     * 继续发送上次未完成的消息
+     */
+    public void init() {
+        var pending = OutboxDao.getInstance().getPending();
+        if (pending.isEmpty()) {
+            return;
+        }
+        MaidNana.INSTANCE.getLogger().info("继续发送上次未完成的 " + pending.size() + " 条公告");
+        pending.forEach(entry -> attempt(entry, null, OutboundService.Priority.SCHEDULED, new CompletableFuture<>()));
+    }
+
+    /**
+     * 停止重试, 未完成的消息保留在发件箱中, 下次启动时继续发送
+     */
+    public void shutdown() {
+        closed = true;
+        retryExecutor.shutdownNow();
+    }
+
+    /**
+     * 向公告的所有群并发发送公告<br />
+     * 公告在调用线程上渲染一次, 所有群共用同一个消息链, 渲染开销与群数无关
+     *
+     * @param ann      公告
+     * @param priority 发送优先级
+     * @return 全部群发送成功或放弃重试后得到结果
+     */
+    public CompletableFuture<DeliveryReport> deliver(Announcement ann, OutboundService.Priority priority) {
+        var logger = MaidNana.INSTANCE.getLogger();
+        var start = System.currentTimeMillis();
+        var entries = new ArrayList<OutboxEntry>();
+        // 每个群只由一个机器人发送一次; 暂时没有机器人可用的群同样先记录, 由重试等待机器人上线
+        new LinkedHashSet<>(ann.getGroups()).forEach(group -> {
+            var entry = new OutboxEntry();
+            entry.setUuid(UUID.randomUUID());
+            entry.setAnnouncementID(ann.getUuid());
+            entry.setBotID(RoutingService.getInstance().route(group).map(g -> g.getBot().getId()).orElse(0L));
+            entry.setGroupID(group);
+            entry.setCreatedAt(start);
+            entries.add(entry);
+        });
+        if (entries.isEmpty()) {
+            return CompletableFuture.completedFuture(new DeliveryReport(ann.getUuid(), 0, 0, 0, 0));
+        }
+
+        String text;
+        try {
+            text = ann.getBody().getBodyString();
+        } catch (RuntimeException e) {
+            logger.error("无法渲染公告 " + ann.getUuid(), e);
+            return CompletableFuture.completedFuture(new DeliveryReport(ann.getUuid(), entries.size(), 0,
+                    entries.size(), System.currentTimeMillis() - start));
+        }
+        var fire = new OutboxFire();
+        fire.setUuid(UUID.randomUUID());
+        fire.setAnnouncementID(ann.getUuid());
+        fire.setText(text);
+        fire.setCreatedAt(start);
+        entries.forEach(e -> e.setFireID(fire.getUuid()));
+        var message = MessageUtils.newChain(new PlainText(text));
+        // 先落盘再发送, 发送过程中重启也不会丢失; 公告内容每次触发只写入一次
+        OutboxDao.getInstance().add(fire, entries);
+
+        var succeeded = new AtomicInteger();
+        var failed = new AtomicInteger();
+        var sends = new ArrayList<CompletableFuture<Void>>();
+        entries.forEach(entry -> {
+            var result = new CompletableFuture<Boolean>();
+            attempt(entry, message, priority, result);
+            sends.add(result.thenAccept(ok -> (ok ? succeeded : failed).incrementAndGet()));
+        });
+
+        return CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).thenApply(v -> {
+            var report = new DeliveryReport(ann.getUuid(), sends.size(), succeeded.get(), failed.get(),
+                    System.currentTimeMillis() - start);
+            logger.info("公告 " + ann.getUuid() + " 发送完成: " + report);
+            return report;
+        });
+    }
+
+    /**
+     * 发送一条消息, 失败后重试
+     *
+     * @param entry    消息
+     * @param message  已构建的消息链, 为 null 时由消息内容构建
+     * @param priority 发送优先级
+     * @param result   发送成功后以 true 完成, 放弃重试后以 false 完成
+     */
+    private void attempt(OutboxEntry entry, Message message, OutboundService.Priority priority,
+                         CompletableFuture<Boolean> result) {
+        if (closed) {
+            result.complete(false);
+            return;
+        }
+        // 记录时没有可用机器人的消息 botID 为 0, 视为离线
+        var bot = entry.getBotID() == 0 ? null : Bot.getInstanceOrNull(entry.getBotID());
+        var online = bot != null && bot.isOnline();
+        var group = online ? bot.getGroup(entry.getGroupID()) : null;
+        if (group == null) {
+            // 原来的机器人离线或已退群, 换一个在群中的机器人
+            group = RoutingService.getInstance().route(entry.getGroupID()).orElse(null);
+        }
+        if (group == null) {
+            if (online) {
+                fail(entry, "没有机器人在群 " + entry.getGroupID() + " 中", result);
+            } else {
+                // 机器人离线不计入失败次数, 但同样按次数退避, 超过最长保留时间后放弃
+                var error = entry.getBotID() == 0 ? "没有可用的机器人" : "机器人 " + entry.getBotID() + " 不在线";
+                var next = entry.copy();
+                next.setOfflineAttempts(entry.getOfflineAttempts() + 1);
+                retryOrKill(entry, next, error, priority, result);
+            }
+            return;
+        }
+        var msg = message;
+        if (msg == null) {
+            var text = OutboxDao.getInstance().getText(entry);
+            if (text == null) {
+                fail(entry, "公告内容已丢失", result);
+                return;
+            }
+            msg = MessageUtils.newChain(new PlainText(text));
+        }
+        OutboundService.getInstance().send(group, msg, priority).whenComplete((r, e) -> {
+            if (e == null) {
+                OutboxDao.getInstance().ack(entry.getUuid());
+                result.complete(true);
+                return;
+            }
+            if (closed) {
+                // 关闭时未发出的消息保留在发件箱中
+                result.complete(false);
+                return;
+            }
+            MaidNana.INSTANCE.getLogger().warning("向群 " + entry.getGroupID() + " 发送公告 "
+                    + entry.getAnnouncementID() + " 失败: " + e.getMessage());
+            var next = entry.copy();
+            next.setAttempts(entry.getAttempts() + 1);
+            if (next.getAttempts() >= MaidNanaConstant.OUTBOX_MAX_ATTEMPTS) {
+                fail(next, String.valueOf(e.getMessage()), result);
+                return;
+            }
+            retryOrKill(entry, next, String.valueOf(e.getMessage()), priority, result);
+        });
+    }
+
+    /**
+     * 按失败与离线推迟的总次数退避后重试, 超过最长保留时间则放弃<br />
+     * 只有失败次数变化时才写入发件箱, 离线推迟不产生磁盘写入
+     *
+     * @param entry 本次发送的消息
+     * @param next  下次发送的消息, 是 entry 的副本
+     */
+    private void retryOrKill(OutboxEntry entry, OutboxEntry next, String error,
+                             OutboundService.Priority priority, CompletableFuture<Boolean> result) {
+        if (System.currentTimeMillis() - entry.getCreatedAt()
+                > TimeUnit.HOURS.toMillis(MaidNanaConstant.OUTBOX_MAX_AGE_HOURS)) {
+            fail(next, error, result);
+            return;
+        }
+        next.setLastError(error);
+        if (next.getAttempts() != entry.getAttempts()) {
+            OutboxDao.getInstance().update(next);
+        }
+        var delay = Math.min(MaidNanaConstant.OUTBOX_RETRY_MAX_SECONDS,
+                MaidNanaConstant.OUTBOX_RETRY_BASE_SECONDS << Math.min(next.getAttempts() + next.getOfflineAttempts(), 20));
+        try {
+            retryExecutor.schedule(() -> attempt(next, null, priority, result), delay, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            result.complete(false);
+        }
+    }
+
+    /**
+     * 放弃重试, 移入死信
+     */
+    private void fail(OutboxEntry entry, String error, CompletableFuture<Boolean> result) {
+        var dead = entry.copy();
+        dead.setLastError(error);
+        OutboxDao.getInstance().kill(dead);
+        MaidNana.INSTANCE.getLogger().error("放弃向群 " + entry.getGroupID() + " 发送公告 "
+                + entry.getAnnouncementID() + ": " + error);
+        result.complete(false);
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.nanoyou.maidnana.service;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
+import com.github.nanoyou.maidnana.util.TokenBucket;
+import net.mamoe.mirai.contact.Contact;
+import net.mamoe.mirai.message.data.Message;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息发送队列<br />
+ * 所有发出的消息按机器人排队, 每个机器人有独立的令牌桶限速
+ * ({@link MaidNanaConstant#OUTBOUND_RATE_PER_SECOND}, {@link MaidNanaConstant#OUTBOUND_BURST}),
+ * 整点的大量定时公告会被平滑发出, 不会触发风控<br />
+ * 队列按优先级出队: 命令回复 &gt; 手动发送 &gt; 定时发送, 同优先级先进先出;
+ * 取得令牌后交给固定大小的线程池发送
+ */
+public class OutboundService {
+    private final static OutboundService instance = new OutboundService();
+
+    public static OutboundService getInstance() {
+        return instance;
+    }
+
+    /**
+     * 发送优先级, 越靠前越优先
+     */
+    public enum Priority {
+        COMMAND_REPLY("命令回复"),
+        MANUAL("手动发送"),
+        SCHEDULED("定时发送");
+
+        private final String description;
+
+        Priority(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private record Outgoing(Priority priority, long seq, long enqueued, Contact contact, Message message,
+                            CompletableFuture<Void> future) implements Comparable<Outgoing> {
+        @Override
+        public int compareTo(Outgoing o) {
+            var r = priority.compareTo(o.priority);
+            return r != 0 ? r : Long.compare(seq, o.seq);
+        }
+    }
+
+    /**
+     * 单个机器人的队列
+     */
+    private final class BotQueue implements Runnable {
+        private final PriorityBlockingQueue<Outgoing> queue = new PriorityBlockingQueue<>();
+        private final TokenBucket bucket = new TokenBucket(
+                MaidNanaConstant.OUTBOUND_RATE_PER_SECOND, MaidNanaConstant.OUTBOUND_BURST);
+        private final Thread thread;
+
+        BotQueue(long botID) {
+            thread = new Thread(this, "MaidNana-Outbound-" + botID);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    // 先取令牌再出队, 等待期间到达的高优先级消息可以插队
+                    bucket.acquire();
+                    Outgoing o;
+                    while ((o = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                        if (closed) {
+                            return;
+                        }
+                    }
+                    var item = o;
+                    try {
+                        sender.execute(() -> send(item));
+                    } catch (RejectedExecutionException e) {
+                        item.future().completeExceptionally(e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                queue.forEach(o -> o.future().completeExceptionally(new CancellationException("发送队列已关闭")));
+            }
+        }
+    }
+
+    private final Map<Long, BotQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+    private volatile boolean closed = false;
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ExecutorService sender = Executors.newFixedThreadPool(MaidNanaConstant.DELIVERY_PARALLELISM, r -> {
+        var t = new Thread(r, "MaidNana-Send-" + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder[] sent = new LongAdder[Priority.values().length];
+    private final LongAdder[] totalLatency = new LongAdder[Priority.values().length];
+    private final AtomicLong[] maxLatency = new AtomicLong[Priority.values().length];
+
+    private OutboundService() {
+        for (int i = 0; i < sent.length; i++) {
+            sent[i] = new LongAdder();
+            totalLatency[i] = new LongAdder();
+            maxLatency[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * 将消息放入发送队列
+     *
+     * @param contact  接收者
+     * @param message  消息
+     * @param priority 优先级
+     * @return 发送完成后完成, 发送失败时异常完成
+     */
+    public CompletableFuture<Void> send(Contact contact, Message message, Priority priority) {
+        var future = new CompletableFuture<Void>();
+        if (closed) {
+            future.completeExceptionally(new CancellationException("发送队列已关闭"));
+            return future;
+        }
+        var botQueue = queues.computeIfAbsent(contact.getBot().getId(), BotQueue::new);
+        var o = new Outgoing(priority, seq.incrementAndGet(), System.nanoTime(), contact, message, future);
+        botQueue.queue.add(o);
+        // 与 shutdown 并发时队列线程可能已经退出
+        if (closed && !botQueue.thread.isAlive() && botQueue.queue.remove(o)) {
+            future.completeExceptionally(new CancellationException("发送队列已关闭"));
+        }
+        return future;
+    }
+
+    private void send(Outgoing o) {
+        var i = o.priority().ordinal();
+        var latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - o.enqueued());
+        sent[i].increment();
+        totalLatency[i].add(latency);
+        maxLatency[i].accumulateAndGet(latency, Math::max);
+        try {
+            o.contact().sendMessage(o.message());
+            o.future().complete(null);
+        } catch (RuntimeException e) {
+            o.future().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return 全部机器人队列中等待发送的消息数
+     */
+    public int getQueued() {
+        return queues.values().stream().mapToInt(q -> q.queue.size()).sum();
+    }
+
+    /**
+     * @return 该优先级已出队的消息数
+     */
+    public long getSent(Priority priority) {
+        return sent[priority.ordinal()].sum();
+    }
+
+    /**
+     * @return 该优先级从入队到开始发送的平均等待时间(毫秒)
+     */
+    public long getAverageLatencyMillis(Priority priority) {
+        var count = getSent(priority);
+        return count == 0 ? 0 : totalLatency[priority.ordinal()].sum() / count;
+    }
+
+    /**
+     * @return 该优先级从入队到开始发送的最长等待时间(毫秒)
+     */
+    public long getMaxLatencyMillis(Priority priority) {
+        return maxLatency[priority.ordinal()].get();
+    }
+
+    /**
+     * 停止接受新消息, 等待已排队的消息发出<br />
+     * 所有机器人的队列共用一个 10 秒的期限, 到期仍未排空的队列被中断, 其中的消息以取消结束
+     */
+    public void shutdown() {
+        closed = true;
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try {
+            for (var q : queues.values()) {
+                var remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    break;
+                }
+                q.thread.join(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queues.values().forEach(q -> q.thread.interrupt());
+        sender.shutdown();
+        try {
+            if (!sender.awaitTermination(30, TimeUnit.SECONDS)) {
+                MaidNana.INSTANCE.getLogger().warning("仍有消息未发送完成");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
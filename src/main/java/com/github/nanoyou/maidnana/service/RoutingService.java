@@ -0,0 +1,143 @@
+package com.github.nanoyou.maidnana.service;
+
+import net.mamoe.mirai.Bot;
+import net.mamoe.mirai.contact.Group;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 群路由表, 群号 -> 能向该群发送消息的机器人<br />
+ * 启动时从在线的机器人建立, 之后由机器人上线、下线、入群、退群事件增量维护;
+ * 发送时每个群直接查表, 多个机器人在同一个群时只由QQ号最小的机器人发送一次
+ */
+public class RoutingService {
+    private final static RoutingService instance = new RoutingService();
+
+    public static RoutingService getInstance() {
+        return instance;
+    }
+
+    /**
+     * 群号 -> 机器人QQ号, 有序且不可变, 修改时整体替换
+     */
+    private final Map<Long, List<Long>> routes = new ConcurrentHashMap<>();
+    /**
+     * 机器人QQ号 -> 所在的群号, 机器人下线时用于移除路由, 受自身锁保护
+     */
+    private final Map<Long, Set<Long>> botGroups = new HashMap<>();
+
+    /**
+     * 从当前在线的机器人建立路由表
+     */
+    public void init() {
+        Bot.getInstances().forEach(bot -> {
+            if (bot.isOnline()) {
+                addBot(bot);
+            }
+        });
+    }
+
+    /**
+     * 机器人上线, 加入其所在全部群的路由
+     *
+     * @param bot 机器人
+     */
+    public void addBot(Bot bot) {
+        bot.getGroups().forEach(g -> add(g.getId(), bot.getId()));
+    }
+
+    /**
+     * 机器人下线, 从全部群的路由中移除
+     *
+     * @param botID 机器人QQ号
+     */
+    public void removeBot(long botID) {
+        Set<Long> groups;
+        synchronized (botGroups) {
+            groups = botGroups.remove(botID);
+        }
+        if (groups != null) {
+            groups.forEach(groupID -> removeRoute(groupID, botID));
+        }
+    }
+
+    /**
+     * 机器人入群
+     *
+     * @param groupID 群号
+     * @param botID   机器人QQ号
+     */
+    public void add(long groupID, long botID) {
+        synchronized (botGroups) {
+            botGroups.computeIfAbsent(botID, k -> new HashSet<>()).add(groupID);
+        }
+        routes.compute(groupID, (k, bots) -> {
+            if (bots != null && bots.contains(botID)) {
+                return bots;
+            }
+            var r = bots == null ? new ArrayList<Long>() : new ArrayList<>(bots);
+            r.add(botID);
+            Collections.sort(r);
+            return List.copyOf(r);
+        });
+    }
+
+    /**
+     * 机器人退群
+     *
+     * @param groupID 群号
+     * @param botID   机器人QQ号
+     */
+    public void remove(long groupID, long botID) {
+        synchronized (botGroups) {
+            var groups = botGroups.get(botID);
+            if (groups != null) {
+                groups.remove(groupID);
+            }
+        }
+        removeRoute(groupID, botID);
+    }
+
+    private void removeRoute(long groupID, long botID) {
+        routes.computeIfPresent(groupID, (k, bots) -> {
+            if (!bots.contains(botID)) {
+                return bots;
+            }
+            var r = new ArrayList<>(bots);
+            r.remove(Long.valueOf(botID));
+            return r.isEmpty() ? null : List.copyOf(r);
+        });
+    }
+
+    /**
+     * 选择向群发送消息的机器人
+     *
+     * @param groupID 群号
+     * @return 第一个在线且在群中的机器人所见的群, 没有则返回空
+     */
+    public Optional<Group> route(long groupID) {
+        var bots = routes.get(groupID);
+        if (bots == null) {
+            return Optional.empty();
+        }
+        for (var botID : bots) {
+            var bot = Bot.getInstanceOrNull(botID);
+            if (bot == null || !bot.isOnline()) {
+                continue;
+            }
+            var group = bot.getGroup(groupID);
+            if (group != null) {
+                return Optional.of(group);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return 有路由的群数
+     */
+    public int size() {
+        return routes.size();
+    }
+}
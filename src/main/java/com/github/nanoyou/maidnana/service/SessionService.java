@@ -0,0 +1,194 @@
+package com.github.nanoyou.maidnana.service;
+
+import com.github.nanoyou.maidnana.MaidNana;
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
+import com.github.nanoyou.maidnana.dao.SessionDao;
+import com.github.nanoyou.maidnana.entity.Session;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 用户会话<br />
+ * 会话保存在并发的 Map 中, 闲置超过 {@link MaidNanaConstant#SESSION_IDLE_TTL_MINUTES} 分钟的会话被移除,
+ * 总数超过 {@link MaidNanaConstant#SESSION_MAX_SIZE} 时移除最久未访问的会话;
+ * 有修改时由后台线程定期写入快照, 重启后恢复
+ */
+public class SessionService {
+    private final static SessionService instance = new SessionService();
+
+    public static SessionService getInstance() {
+        return instance;
+    }
+
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final long idleTTL = TimeUnit.MINUTES.toMillis(MaidNanaConstant.SESSION_IDLE_TTL_MINUTES);
+    private ScheduledExecutorService saver = null;
+
+    /**
+     * 读入保存的会话, 开始定期写入
+     */
+    public synchronized void init() {
+        var now = System.currentTimeMillis();
+        SessionDao.getInstance().load().stream()
+                .filter(s -> now - s.getLastAccess() < idleTTL)
+                .forEach(s -> sessions.put(s.getUserID(), s));
+        saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "MaidNana-Session");
+            t.setDaemon(true);
+            return t;
+        });
+        saver.scheduleWithFixedDelay(this::maintain,
+                MaidNanaConstant.SESSION_SAVE_INTERVAL_SECONDS,
+                MaidNanaConstant.SESSION_SAVE_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止定期写入, 并写入剩余的修改
+     */
+    public synchronized void shutdown() {
+        if (saver == null) {
+            return;
+        }
+        saver.shutdown();
+        saver = null;
+        save();
+    }
+
+    private void maintain() {
+        try {
+            evictIdle();
+            save();
+        } catch (RuntimeException e) {
+            MaidNana.INSTANCE.getLogger().error("无法保存会话", e);
+        }
+    }
+
+    /**
+     * 写入前清除脏标记, 写入期间的修改会重新标记; 写入失败时恢复标记, 下一次维护时重试
+     */
+    private void save() {
+        if (!dirty.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            SessionDao.getInstance().save(new ArrayList<>(sessions.values()));
+        } catch (RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        }
+    }
+
+    private void evictIdle() {
+        var now = System.currentTimeMillis();
+        if (sessions.values().removeIf(s -> now - s.getLastAccess() >= idleTTL)) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * 会话过多时移除最久未访问的十分之一, 摊销排序的开销
+     */
+    private void evictOldest() {
+        var all = new ArrayList<>(sessions.values());
+        all.sort(Comparator.comparingLong(Session::getLastAccess));
+        var count = Math.max(1, all.size() - MaidNanaConstant.SESSION_MAX_SIZE * 9 / 10);
+        for (int i = 0; i < count && i < all.size(); i++) {
+            sessions.remove(all.get(i).getUserID(), all.get(i));
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * 获取会话
+     *
+     * @param userID 用户QQ号
+     * @return 会话的副本, 不存在或已过期返回空
+     */
+    public Optional<Session> get(long userID) {
+        var now = System.currentTimeMillis();
+        var s = sessions.computeIfPresent(userID, (k, v) -> {
+            if (now - v.getLastAccess() >= idleTTL) {
+                return null;
+            }
+            // 会话可能正在被写入, 不修改原对象; 只更新访问时间不需要立即保存, 随下一次修改写入
+            var r = v.copy();
+            r.setLastAccess(now);
+            return r;
+        });
+        return Optional.ofNullable(s).map(Session::copy);
+    }
+
+    /**
+     * 修改会话, 不存在时创建
+     *
+     * @param userID   用户QQ号
+     * @param modifier 修改会话
+     * @return 修改后的会话的副本
+     */
+    public Session update(long userID, Consumer<Session> modifier) {
+        var now = System.currentTimeMillis();
+        var s = sessions.compute(userID, (k, v) -> {
+            Session r;
+            if (v == null || now - v.getLastAccess() >= idleTTL) {
+                r = new Session();
+                r.setUserID(userID);
+            } else {
+                r = v.copy();
+            }
+            modifier.accept(r);
+            r.setLastAccess(now);
+            return r;
+        });
+        dirty.set(true);
+        if (sessions.size() > MaidNanaConstant.SESSION_MAX_SIZE) {
+            evictOldest();
+        }
+        return s.copy();
+    }
+
+    /**
+     * 移除会话
+     *
+     * @param userID 用户QQ号
+     */
+    public void remove(long userID) {
+        if (sessions.remove(userID) != null) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * @return 会话数
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    public Optional<UUID> getSelectedAnnouncement(long userID) {
+        return get(userID).map(Session::getSelectedAnnouncement);
+    }
+
+    public void selectAnnouncement(long userID, UUID announcementID) {
+        update(userID, s -> s.setSelectedAnnouncement(announcementID));
+    }
+
+    public Optional<UUID> getSelectedTemplate(long userID) {
+        return get(userID).map(Session::getSelectedTemplate);
+    }
+
+    public void selectTemplate(long userID, UUID templateID) {
+        update(userID, s -> s.setSelectedTemplate(templateID));
+    }
+}
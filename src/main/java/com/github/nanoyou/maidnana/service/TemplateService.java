@@ -1,11 +1,17 @@
 package com.github.nanoyou.maidnana.service;
 
+import com.github.nanoyou.maidnana.constant.MaidNanaConstant;
 import com.github.nanoyou.maidnana.dao.TemplateDao;
 import com.github.nanoyou.maidnana.entity.Template;
+import com.github.nanoyou.maidnana.util.template.CompiledTemplate;
+import com.github.nanoyou.maidnana.util.template.RenderCache;
+import lombok.Getter;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TemplateService {
 
@@ -15,6 +21,51 @@ public class TemplateService {
         return instance;
     }
 
+    /**
+     * 编译好的模板, 模板ID -> 编译结果
+     */
+    private final Map<UUID, CompiledTemplate> compiled = new ConcurrentHashMap<>();
+    /**
+     * 渲染结果缓存
+     */
+    @Getter
+    private final RenderCache renderCache = new RenderCache(
+            MaidNanaConstant.RENDER_CACHE_MAX_ENTRIES, MaidNanaConstant.RENDER_CACHE_MAX_CHARS);
+
+    private TemplateService() {
+        // 事件是异步送达的, 渲染时还会核对模板文本, 不会用到过期的编译结果
+        TemplateDao.getInstance().registerObserver(events -> events.forEach(e -> {
+            compiled.remove(e.getUuid());
+            renderCache.invalidate(e.getUuid());
+        }));
+    }
+
+    /**
+     * 获取编译好的模板, 模板修改后重新编译
+     * @param templateID 模板ID
+     * @return 编译结果, 模板不存在返回空
+     */
+    public Optional<CompiledTemplate> getCompiled(UUID templateID) {
+        return get(templateID).map(t -> {
+            var c = compiled.get(templateID);
+            if (c == null || !c.getSource().equals(t.getTemplate())) {
+                c = CompiledTemplate.compile(t.getTemplate());
+                compiled.put(templateID, c);
+            }
+            return c;
+        });
+    }
+
+    /**
+     * 渲染模板, 相同模板版本与变量的结果会被缓存
+     * @param templateID 模板ID
+     * @param var 变量
+     * @return 渲染结果, 模板不存在返回空
+     */
+    public Optional<String> render(UUID templateID, Map<String, String> var) {
+        return getCompiled(templateID).map(c -> renderCache.get(templateID, c, var, () -> c.render(var)));
+    }
+
     /**
      * 创建模板
      * @param template 模板文本
@@ -85,9 +136,10 @@ public class TemplateService {
         if (t.isEmpty()) {
             return t;
         }
-        var v = t.get();
+        var v = t.get().copy();
         v.setTemplate(template);
-        return Optional.of(TemplateDao.getInstance().modify(v));
+        TemplateDao.getInstance().modify(v);
+        return Optional.of(v);
     }
 
     /**
@@ -1,78 +1,34 @@
 package com.github.nanoyou.maidnana.util;
 
-import com.github.nanoyou.maidnana.entity.Body;
-import com.github.nanoyou.maidnana.entity.PlainBody;
-import com.github.nanoyou.maidnana.entity.TemplateBody;
-import com.google.gson.*;
-import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonWriter;
+import com.github.nanoyou.maidnana.entity.*;
+import com.github.nanoyou.maidnana.util.adapter.*;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
 
+/**
+ * 全部实体都注册了手写的流式 TypeAdapter, 直接读写 token, 不经过反射与中间的 Map
+ */
 public class GsonUtil {
-    public static Gson gson = new GsonBuilder().setPrettyPrinting()
-            .registerTypeAdapter(UUID.class, new TypeAdapter<UUID>() {
-
-                @Override
-                public void write(JsonWriter out, UUID value) throws IOException {
-                    out.value(value.toString());
-                }
-
-                @Override
-                public UUID read(JsonReader in) throws IOException {
-                    return UUID.fromString(in.nextString());
-                }
-            })
-            .registerTypeHierarchyAdapter(Body.class, new TypeAdapter<Body>() {
-
-                @Override
-                public void write(JsonWriter out, Body value) throws IOException {
-                    if (value == null) {
-                        out.nullValue();
-                        return;
-                    }
-                    var r = new HashMap<String, Object>();
-                    if (value instanceof PlainBody) {
-                        var body = (PlainBody) value;
-                        r.put("type", "plain");
-                        r.put("content", body.getContent());
-                    } else {
-                        var body = (TemplateBody) value;
-                        r.put("type", "template");
-                        r.put("template", body.getTemplateID());
-                        r.put("var", body.getVar());
-                    }
-                    gson.toJson(r, Map.class, out);
-                }
-
-                @SuppressWarnings("all")
-                @Override
-                public Body read(JsonReader in) {
-                    Map<String, Object> r = gson.fromJson(in, Map.class);
-                    var type = (String) r.get("type");
-                    if (type == null) {
-                        return null;
-                    }
-                    Body body;
-                    if ("plain".equals(type)) {
-                        var plainBody = new PlainBody();
-                        plainBody.setContent((String) r.get("content"));
-                        body = plainBody;
-                    } else {
-                        var templateBody = new TemplateBody();
-                        var uuid = (String) r.get("template");
-                        if (uuid != null) {
-                            templateBody.setTemplateID(UUID.fromString(uuid));
-                        }
-                        templateBody.setVar(new HashMap<String, String>((Map) r.get("var")));
-
-                        body = templateBody;
-                    }
-                    return body;
-                }
-            })
-            .create();
+    /**
+     * 带缩进的 Gson, 用于需要人阅读的输出
+     */
+    public static Gson gson = builder().setPrettyPrinting().create();
+    /**
+     * 不带缩进的 Gson, 用于数据文件与日志的持久化
+     */
+    public static Gson compactGson = builder().create();
+
+    private static GsonBuilder builder() {
+        return new GsonBuilder()
+            .registerTypeAdapter(UUID.class, new UUIDAdapter())
+            .registerTypeHierarchyAdapter(Body.class, new BodyAdapter())
+            .registerTypeAdapter(Trigger.class, new TriggerAdapter())
+            .registerTypeAdapter(Announcement.class, new AnnouncementAdapter())
+            .registerTypeAdapter(Template.class, new TemplateAdapter())
+            .registerTypeAdapter(OutboxEntry.class, new OutboxEntryAdapter())
+            .registerTypeAdapter(OutboxFire.class, new OutboxFireAdapter())
+            .registerTypeAdapter(Session.class, new SessionAdapter());
+    }
 }
@@ -1,4 +1,34 @@
 package com.github.nanoyou.maidnana.util;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MaidNanaUtil {
+    /**
+     * 将多段文本合并为尽量少的消息, 每条消息不超过 maxChars 个字符<br />
+     * 段落不会被拆开, 单段超过上限时独占一条消息
+     *
+     * @param parts     文本段
+     * @param separator 段之间的分隔符
+     * @param maxChars  每条消息的最大字符数
+     * @return 合并后的消息
+     */
+    public static List<String> chunk(List<String> parts, String separator, int maxChars) {
+        var r = new ArrayList<String>();
+        var sb = new StringBuilder();
+        for (var part : parts) {
+            if (sb.length() > 0 && sb.length() + separator.length() + part.length() > maxChars) {
+                r.add(sb.toString());
+                sb.setLength(0);
+            }
+            if (sb.length() > 0) {
+                sb.append(separator);
+            }
+            sb.append(part);
+        }
+        if (sb.length() > 0) {
+            r.add(sb.toString());
+        }
+        return r;
+    }
 }
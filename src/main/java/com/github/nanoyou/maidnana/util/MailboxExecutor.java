@@ -0,0 +1,151 @@
+package com.github.nanoyou.maidnana.util;
+
+import com.github.nanoyou.maidnana.MaidNana;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按键串行的线程池<br />
+ * 每个键有一个信箱, 同一个键的任务按提交顺序逐个执行, 不同键的任务在线程池中并行执行;
+ * 信箱清空后即被移除, 不会随键的数量增长
+ *
+ * @param <K> 键的类型
+ */
+public class MailboxExecutor<K> {
+    private final ExecutorService pool;
+    /**
+     * 有待执行任务的信箱, 受自身锁保护
+     */
+    private final Map<K, ArrayDeque<Runnable>> mailboxes = new HashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    /**
+     * 已关闭, 不再接受新任务, 受 mailboxes 的锁保护
+     */
+    private boolean closed = false;
+
+    /**
+     * @param name        线程名前缀
+     * @param parallelism 线程数
+     */
+    public MailboxExecutor(String name, int parallelism) {
+        var count = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(parallelism, r -> {
+            var t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param key  键, 同一个键的任务串行执行
+     * @param task 任务
+     */
+    public void execute(K key, Runnable task) {
+        int depth;
+        synchronized (mailboxes) {
+            if (closed) {
+                throw new RejectedExecutionException("线程池已关闭");
+            }
+            var mailbox = mailboxes.get(key);
+            if (mailbox == null) {
+                // 先提交再创建信箱: 被拒绝时异常只抛给本次调用, 信箱中没有任何任务;
+                // drain 需要同一把锁, 会在信箱与任务放入之后才开始执行
+                pool.execute(() -> drain(key));
+                mailbox = new ArrayDeque<>();
+                mailboxes.put(key, mailbox);
+            }
+            mailbox.add(task);
+            depth = mailbox.size();
+            pending.incrementAndGet();
+        }
+        maxDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * 依次执行信箱中的任务, 直到信箱为空
+     */
+    private void drain(K key) {
+        while (true) {
+            Runnable task;
+            synchronized (mailboxes) {
+                var mailbox = mailboxes.get(key);
+                task = mailbox.peek();
+                if (task == null) {
+                    mailboxes.remove(key);
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                MaidNana.INSTANCE.getLogger().error("任务执行失败, 键: " + key, e);
+            }
+            // 执行完再出队, 执行期间信箱非空, 新任务不会另起线程
+            synchronized (mailboxes) {
+                mailboxes.get(key).poll();
+            }
+            pending.decrementAndGet();
+            completed.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return 全部信箱中尚未执行完的任务数
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * @return 有待执行任务的信箱数
+     */
+    public int getActiveMailboxes() {
+        synchronized (mailboxes) {
+            return mailboxes.size();
+        }
+    }
+
+    /**
+     * @return 单个信箱出现过的最大任务数
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * @return 已执行的任务数
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * 不再接受新任务, 等待已提交的任务执行完
+     */
+    public void shutdown() {
+        // 先在锁内拒绝新任务, 之后线程池才关闭, 已放入信箱的任务都有线程执行
+        synchronized (mailboxes) {
+            closed = true;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                MaidNana.INSTANCE.getLogger().warning("仍有 " + pending.get() + " 个任务未执行");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
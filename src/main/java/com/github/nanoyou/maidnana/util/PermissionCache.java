@@ -0,0 +1,74 @@
+package com.github.nanoyou.maidnana.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 权限检查结果缓存<br />
+ * 每个结果只保存一个 long: 正数表示有权限, 负数表示无权限, 绝对值为过期时间(毫秒),
+ * 因此无权限用户的大量消息也只占用一个条目, 过期前不会再访问权限服务<br />
+ * 授予或撤销权限后需调用 {@link #invalidate} 使结果立即失效, 其他途径的修改最晚在 ttl 后生效
+ *
+ * @param <K> 权限主体
+ */
+public class PermissionCache<K> {
+    private final Predicate<K> resolver;
+    private final long ttl;
+    private final int maxSize;
+    private final Map<K, Long> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param resolver 实际检查权限
+     * @param ttl      结果有效期(毫秒)
+     * @param maxSize  最多缓存的主体数
+     */
+    public PermissionCache(Predicate<K> resolver, long ttl, int maxSize) {
+        this.resolver = resolver;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 检查权限
+     *
+     * @param key 权限主体
+     * @return 是否有权限
+     */
+    public boolean test(K key) {
+        var now = System.currentTimeMillis();
+        var entry = entries.get(key);
+        if (entry != null && Math.abs(entry) > now) {
+            return entry > 0;
+        }
+        var allowed = resolver.test(key);
+        if (entries.size() >= maxSize) {
+            entries.values().removeIf(v -> Math.abs(v) <= now);
+            if (entries.size() >= maxSize) {
+                entries.clear();
+            }
+        }
+        entries.put(key, allowed ? now + ttl : -(now + ttl));
+        return allowed;
+    }
+
+    /**
+     * 使主体的结果失效
+     *
+     * @param key 权限主体
+     */
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * 使全部结果失效
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
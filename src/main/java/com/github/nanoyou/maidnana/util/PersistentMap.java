@@ -0,0 +1,354 @@
+package com.github.nanoyou.maidnana.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * 不可变的持久化哈希表 (Hash Array Mapped Trie)<br />
+ * 每次修改返回一张新表, 与旧表共享未改动的节点, 单次修改只复制 O(log n) 个节点,
+ * 旧表保持不变, 因此可以无锁地发布给读者<br />
+ * 键和值都不能为 null
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public final class PersistentMap<K, V> {
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node<K, V> root;
+    private final int size;
+    /**
+     * 懒加载的值列表, 每个版本最多生成一次
+     */
+    private volatile List<V> values = null;
+
+    private PersistentMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    private static int hash(Object key) {
+        var h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @param key 键
+     * @return 对应的值, 不存在返回 null
+     */
+    public V get(K key) {
+        if (root == null) {
+            return null;
+        }
+        return root.get(key, hash(key), 0);
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 放入键值对
+     *
+     * @return 新的表, 值未改变时返回自身
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        var added = new boolean[1];
+        Node<K, V> newRoot;
+        if (root == null) {
+            newRoot = new BitmapNode<K, V>(0, new Object[0]).put(key, hash(key), value, 0, added);
+        } else {
+            newRoot = root.put(key, hash(key), value, 0, added);
+        }
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * 删除键
+     *
+     * @return 新的表, 键不存在时返回自身
+     */
+    public PersistentMap<K, V> minus(K key) {
+        if (root == null) {
+            return this;
+        }
+        var newRoot = root.remove(key, hash(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentMap<>(newRoot, size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach(action);
+        }
+    }
+
+    /**
+     * 返回全部值, 列表不可修改, 同一版本的表多次调用返回同一个列表
+     *
+     * @return 全部值
+     */
+    public List<V> values() {
+        var r = values;
+        if (r == null) {
+            var list = new ArrayList<V>(size);
+            forEach((k, v) -> list.add(v));
+            r = Collections.unmodifiableList(list);
+            values = r;
+        }
+        return r;
+    }
+
+    private interface Node<K, V> {
+        V get(K key, int hash, int shift);
+
+        Node<K, V> put(K key, int hash, V value, int shift, boolean[] added);
+
+        /**
+         * @return 删除后的节点, 节点变空时返回 null, 未找到时返回自身
+         */
+        Node<K, V> remove(K key, int hash, int shift);
+
+        void forEach(BiConsumer<? super K, ? super V> action);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    /**
+     * 由两个哈希不同层级相同的键值对创建子节点
+     */
+    private static <K, V> Node<K, V> createNode(int shift, K k1, int h1, V v1, K k2, int h2, V v2) {
+        if (h1 == h2) {
+            return new CollisionNode<>(h1, new Object[]{k1, v1, k2, v2});
+        }
+        var b1 = bit(h1, shift);
+        var b2 = bit(h2, shift);
+        if (b1 == b2) {
+            return new BitmapNode<>(b1, new Object[]{null, createNode(shift + 5, k1, h1, v1, k2, h2, v2)});
+        }
+        // 槽位按位序排列
+        if (Integer.compareUnsigned(b1, b2) < 0) {
+            return new BitmapNode<>(b1 | b2, new Object[]{k1, v1, k2, v2});
+        }
+        return new BitmapNode<>(b1 | b2, new Object[]{k2, v2, k1, v1});
+    }
+
+    /**
+     * 位图节点, array 中每两格为一个槽位: 键为 null 时值为子节点, 否则为键值对
+     */
+    private static final class BitmapNode<K, V> implements Node<K, V> {
+        private final int bitmap;
+        private final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(K key, int hash, int shift) {
+            var bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            var i = 2 * index(bit);
+            var k = array[i];
+            var v = array[i + 1];
+            if (k == null) {
+                return ((Node<K, V>) v).get(key, hash, shift + 5);
+            }
+            return key.equals(k) ? (V) v : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Node<K, V> put(K key, int hash, V value, int shift, boolean[] added) {
+            var bit = bit(hash, shift);
+            var i = 2 * index(bit);
+            if ((bitmap & bit) == 0) {
+                var newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode<>(bitmap | bit, newArray);
+            }
+            var k = array[i];
+            var v = array[i + 1];
+            if (k == null) {
+                var sub = ((Node<K, V>) v).put(key, hash, value, shift + 5, added);
+                return sub == v ? this : with(i + 1, sub);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : with(i + 1, value);
+            }
+            added[0] = true;
+            var sub = createNode(shift + 5, (K) k, hash(k), (V) v, key, hash, value);
+            var newArray = array.clone();
+            newArray[i] = null;
+            newArray[i + 1] = sub;
+            return new BitmapNode<>(bitmap, newArray);
+        }
+
+        private BitmapNode<K, V> with(int i, Object value) {
+            var newArray = array.clone();
+            newArray[i] = value;
+            return new BitmapNode<>(bitmap, newArray);
+        }
+
+        private Node<K, V> without(int bit, int i) {
+            if (bitmap == bit) {
+                return null;
+            }
+            var newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new BitmapNode<>(bitmap & ~bit, newArray);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Node<K, V> remove(K key, int hash, int shift) {
+            var bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            var i = 2 * index(bit);
+            var k = array[i];
+            var v = array[i + 1];
+            if (k == null) {
+                var sub = ((Node<K, V>) v).remove(key, hash, shift + 5);
+                if (sub == v) {
+                    return this;
+                }
+                return sub == null ? without(bit, i) : with(i + 1, sub);
+            }
+            return key.equals(k) ? without(bit, i) : this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node<K, V>) array[i + 1]).forEach(action);
+                } else {
+                    action.accept((K) array[i], (V) array[i + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 哈希完全相同的键值对, 线性查找
+     */
+    private static final class CollisionNode<K, V> implements Node<K, V> {
+        private final int hash;
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int find(K key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(K key, int hash, int shift) {
+            if (hash != this.hash) {
+                return null;
+            }
+            var i = find(key);
+            return i < 0 ? null : (V) array[i + 1];
+        }
+
+        @Override
+        public Node<K, V> put(K key, int hash, V value, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // 哈希不同, 拆成位图节点后再放入
+                return new BitmapNode<K, V>(bit(this.hash, shift), new Object[]{null, this})
+                        .put(key, hash, value, shift, added);
+            }
+            var i = find(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                var newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode<>(hash, newArray);
+            }
+            var newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode<>(hash, newArray);
+        }
+
+        @Override
+        public Node<K, V> remove(K key, int hash, int shift) {
+            if (hash != this.hash) {
+                return this;
+            }
+            var i = find(key);
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            var newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new CollisionNode<>(hash, newArray);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept((K) array[i], (V) array[i + 1]);
+            }
+        }
+    }
+}
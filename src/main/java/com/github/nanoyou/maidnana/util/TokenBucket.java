@@ -0,0 +1,69 @@
+package com.github.nanoyou.maidnana.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 令牌桶<br />
+ * 令牌以固定速率生成, 最多积攒 burst 个; 空闲后允许短时间内连续取出 burst 个令牌,
+ * 之后按生成速率平滑放行
+ */
+public class TokenBucket {
+    private final double permitsPerNano;
+    private final double burst;
+    /**
+     * 时钟, 返回纳秒, 只用于计算时间差
+     */
+    private final LongSupplier nanoTime;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param permitsPerSecond 每秒生成的令牌数
+     * @param burst            最多积攒的令牌数
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * @param permitsPerSecond 每秒生成的令牌数
+     * @param burst            最多积攒的令牌数
+     * @param nanoTime         时钟, 返回纳秒
+     */
+    TokenBucket(double permitsPerSecond, int burst, LongSupplier nanoTime) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.nanoTime = nanoTime;
+        this.tokens = burst;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    /**
+     * 尝试取出一个令牌, 不等待
+     *
+     * @return 0 表示已取出, 否则为下一个令牌生成前需要等待的纳秒数
+     */
+    synchronized long tryAcquire() {
+        var now = nanoTime.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / permitsPerNano);
+    }
+
+    /**
+     * 取出一个令牌, 没有令牌时等待
+     *
+     * @throws InterruptedException 等待时被中断
+     */
+    public void acquire() throws InterruptedException {
+        long wait;
+        while ((wait = tryAcquire()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.nanoyou.maidnana.util.adapter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * 各实体 TypeAdapter 共用的读写方法
+ */
+final class AdapterUtil {
+    private AdapterUtil() {
+    }
+
+    /**
+     * 读取可以为 null 的字符串
+     */
+    static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * 读取可以为 null 的 UUID
+     */
+    static UUID nextUUIDOrNull(JsonReader in) throws IOException {
+        var s = nextStringOrNull(in);
+        return s == null ? null : UUID.fromString(s);
+    }
+
+    /**
+     * 写入可以为 null 的 UUID
+     */
+    static void writeUUID(JsonWriter out, UUID value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.toString());
+        }
+    }
+
+    /**
+     * 遇到 null 时消费掉并返回 true, 用于 read 方法开头
+     */
+    static boolean consumeNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.nanoyou.maidnana.util.adapter;
+
+import com.github.nanoyou.maidnana.entity.Announcement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 公告的流式读写, 公告体与触发器直接交给对应的 TypeAdapter, 不经过反射
+ */
+public class AnnouncementAdapter extends TypeAdapter<Announcement> {
+    @Override
+    public void write(JsonWriter out, Announcement value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("uuid");
+        AdapterUtil.writeUUID(out, value.getUuid());
+        out.name("alias").value(value.getAlias());
+        out.name("groups").beginArray();
+        for (var group : value.getGroups()) {
+            out.value(group);
+        }
+        out.endArray();
+        out.name("body");
+        BodyAdapter.INSTANCE.write(out, value.getBody());
+        out.name("enabled").value(value.isEnabled());
+        out.name("triggers").beginArray();
+        for (var trigger : value.getTriggers()) {
+            TriggerAdapter.INSTANCE.write(out, trigger);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public Announcement read(JsonReader in) throws IOException {
+        if (AdapterUtil.consumeNull(in)) {
+            return null;
+        }
+        // 构造时已创建空的群列表与触发器列表, 缺少或为 null 的字段保持为空列表
+        var r = new Announcement();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "uuid" -> r.setUuid(AdapterUtil.nextUUIDOrNull(in));
+                case "alias" -> r.setAlias(AdapterUtil.nextStringOrNull(in));
+                case "groups" -> {
+                    if (AdapterUtil.consumeNull(in)) {
+                        break;
+                    }
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        r.getGroups().add(in.nextLong());
+                    }
+                    in.endArray();
+                }
+                case "body" -> r.setBody(BodyAdapter.INSTANCE.read(in));
+                case "enabled" -> r.setEnabled(in.nextBoolean());
+                case "triggers" -> {
+                    if (AdapterUtil.consumeNull(in)) {
+                        break;
+                    }
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        var trigger = TriggerAdapter.INSTANCE.read(in);
+                        if (trigger != null) {
+                            r.getTriggers().add(trigger);
+                        }
+                    }
+                    in.endArray();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+}
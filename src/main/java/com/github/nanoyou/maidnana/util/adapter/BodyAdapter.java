@@ -0,0 +1,99 @@
+package com.github.nanoyou.maidnana.util.adapter;
+
+import com.github.nanoyou.maidnana.entity.Body;
+import com.github.nanoyou.maidnana.entity.PlainBody;
+import com.github.nanoyou.maidnana.entity.TemplateBody;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 公告体的流式读写, 以 type 字段区分纯文本与模板<br />
+ * 旧版本写出的字段顺序不固定, 因此读取时先收集全部字段再创建对象
+ */
+public class BodyAdapter extends TypeAdapter<Body> {
+    static final BodyAdapter INSTANCE = new BodyAdapter();
+
+    @Override
+    public void write(JsonWriter out, Body value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (value instanceof PlainBody body) {
+            out.name("type").value("plain");
+            out.name("content").value(body.getContent());
+        } else {
+            var body = (TemplateBody) value;
+            out.name("type").value("template");
+            out.name("template");
+            AdapterUtil.writeUUID(out, body.getTemplateID());
+            out.name("var");
+            if (body.getVar() == null) {
+                out.nullValue();
+            } else {
+                out.beginObject();
+                for (var e : body.getVar().entrySet()) {
+                    out.name(e.getKey()).value(e.getValue());
+                }
+                out.endObject();
+            }
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Body read(JsonReader in) throws IOException {
+        if (AdapterUtil.consumeNull(in)) {
+            return null;
+        }
+        String type = null;
+        String content = null;
+        UUID templateID = null;
+        Map<String, String> var = new HashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type" -> type = AdapterUtil.nextStringOrNull(in);
+                case "content" -> content = AdapterUtil.nextStringOrNull(in);
+                case "template" -> templateID = AdapterUtil.nextUUIDOrNull(in);
+                case "var" -> readVar(in, var);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (type == null) {
+            return null;
+        }
+        if ("plain".equals(type)) {
+            var body = new PlainBody();
+            body.setContent(content);
+            return body;
+        }
+        var body = new TemplateBody();
+        body.setTemplateID(templateID);
+        body.setVar(var);
+        return body;
+    }
+
+    private static void readVar(JsonReader in, Map<String, String> var) throws IOException {
+        if (AdapterUtil.consumeNull(in)) {
+            return;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            var name = in.nextName();
+            var value = AdapterUtil.nextStringOrNull(in);
+            if (value != null) {
+                var.put(name, value);
+            }
+        }
+        in.endObject();
+    }
+}
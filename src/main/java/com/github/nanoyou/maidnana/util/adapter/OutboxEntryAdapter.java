@@ -0,0 +1,60 @@
+package com.github.nanoyou.maidnana.util.adapter;
+
+import com.github.nanoyou.maidnana.entity.OutboxEntry;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 发件箱条目的流式读写
+ */
+public class OutboxEntryAdapter extends TypeAdapter<OutboxEntry> {
+    @Override
+    public void write(JsonWriter out, OutboxEntry value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("uuid");
+        AdapterUtil.writeUUID(out, value.getUuid());
+        out.name("announcementID");
+        AdapterUtil.writeUUID(out, value.getAnnouncementID());
+        out.name("botID").value(value.getBotID());
+        out.name("groupID").value(value.getGroupID());
+        out.name("fireID");
+        AdapterUtil.writeUUID(out, value.getFireID());
+        out.name("text").value(value.getText());
+        out.name("attempts").value(value.getAttempts());
+        out.name("createdAt").value(value.getCreatedAt());
+        out.name("lastError").value(value.getLastError());
+        out.endObject();
+    }
+
+    @Override
+    public OutboxEntry read(JsonReader in) throws IOException {
+        if (AdapterUtil.consumeNull(in)) {
+            return null;
+        }
+        var r = new OutboxEntry();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "uuid" -> r.setUuid(AdapterUtil.nextUUIDOrNull(in));
+                case "announcementID" -> r.setAnnouncementID(AdapterUtil.nextUUIDOrNull(in));
+                case "botID" -> r.setBotID(in.nextLong());
+                case "groupID" -> r.setGroupID(in.nextLong());
+                case "fireID" -> r.setFireID(AdapterUtil.nextUUIDOrNull(in));
+                case "text" -> r.setText(AdapterUtil.nextStringOrNull(in));
+                case "attempts" -> r.setAttempts(in.nextInt());
+                case "createdAt" -> r.setCreatedAt(in.nextLong());
+                case "lastError" -> r.setLastError(AdapterUtil.nextStringOrNull(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.nanoyou.maidnana.util.adapter;
+
+import com.github.nanoyou.maidnana.entity.OutboxFire;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 公告触发记录的流式读写
+ */
+public class OutboxFireAdapter extends TypeAdapter<OutboxFire> {
+    @Override
+    public void write(JsonWriter out, OutboxFire value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("uuid");
+        AdapterUtil.writeUUID(out, value.getUuid());
+        out.name("announcementID");
+        AdapterUtil.writeUUID(out, value.getAnnouncementID());
+        out.name("text").value(value.getText());
+        out.name("createdAt").value(value.getCreatedAt());
+        out.endObject();
+    }
+
+    @Override
+    public OutboxFire read(JsonReader in) throws IOException {
+        if (AdapterUtil.consumeNull(in)) {
+            return null;
+        }
+        var r = new OutboxFire();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "uuid" -> r.setUuid(AdapterUtil.nextUUIDOrNull(in));
+                case "announcementID" -> r.setAnnouncementID(AdapterUtil.nextUUIDOrNull(in));
+                case "text" -> r.setText(AdapterUtil.nextStringOrNull(in));
+                case "createdAt" -> r.setCreatedAt(in.nextLong());
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.nanoyou.maidnana.util.adapter;
+
+import com.github.nanoyou.maidnana.entity.Session;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 会话的流式读写
+ */
+public class SessionAdapter extends TypeAdapter<Session> {
+    @Override
+    public void write(JsonWriter out, Session value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("userID").value(value.getUserID());
+        out.name("selectedAnnouncement");
+        AdapterUtil.writeUUID(out, value.getSelectedAnnouncement());
+        out.name("selectedTemplate");
+        AdapterUtil.writeUUID(out, value.getSelectedTemplate());
+        out.name("lastAccess").value(value.getLastAccess());
+        out.endObject();
+    }
+
+    @Override
+    public Session read(JsonReader in) throws IOException {
+        if (AdapterUtil.consumeNull(in)) {
+            return null;
+        }
+        var r = new Session();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "userID" -> r.setUserID(in.nextLong());
+                case "selectedAnnouncement" -> r.setSelectedAnnouncement(AdapterUtil.nextUUIDOrNull(in));
+                case "selectedTemplate" -> r.setSelectedTemplate(AdapterUtil.nextUUIDOrNull(in));
+                case "lastAccess" -> r.setLastAccess(in.nextLong());
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.nanoyou.maidnana.util.adapter;
+
+import com.github.nanoyou.maidnana.entity.Template;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 模板的流式读写
+ */
+public class TemplateAdapter extends TypeAdapter<Template> {
+    @Override
+    public void write(JsonWriter out, Template value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("uuid");
+        AdapterUtil.writeUUID(out, value.getUuid());
+        out.name("alias").value(value.getAlias());
+        out.name("template").value(value.getTemplate());
+        out.endObject();
+    }
+
+    @Override
+    public Template read(JsonReader in) throws IOException {
+        if (AdapterUtil.consumeNull(in)) {
+            return null;
+        }
+        var r = new Template();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "uuid" -> r.setUuid(AdapterUtil.nextUUIDOrNull(in));
+                case "alias" -> r.setAlias(AdapterUtil.nextStringOrNull(in));
+                case "template" -> r.setTemplate(AdapterUtil.nextStringOrNull(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.nanoyou.maidnana.util.adapter;
+
+import com.github.nanoyou.maidnana.entity.Trigger;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 触发器的流式读写
+ */
+public class TriggerAdapter extends TypeAdapter<Trigger> {
+    static final TriggerAdapter INSTANCE = new TriggerAdapter();
+
+    @Override
+    public void write(JsonWriter out, Trigger value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("uuid");
+        AdapterUtil.writeUUID(out, value.getUuid());
+        out.name("cron").value(value.getCron());
+        out.endObject();
+    }
+
+    @Override
+    public Trigger read(JsonReader in) throws IOException {
+        if (AdapterUtil.consumeNull(in)) {
+            return null;
+        }
+        var r = new Trigger();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "uuid" -> r.setUuid(AdapterUtil.nextUUIDOrNull(in));
+                case "cron" -> r.setCron(AdapterUtil.nextStringOrNull(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+}
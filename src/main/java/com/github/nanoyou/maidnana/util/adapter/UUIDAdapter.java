@@ -0,0 +1,23 @@
+package com.github.nanoyou.maidnana.util.adapter;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * UUID 以字符串形式读写
+ */
+public class UUIDAdapter extends TypeAdapter<UUID> {
+    @Override
+    public void write(JsonWriter out, UUID value) throws IOException {
+        AdapterUtil.writeUUID(out, value);
+    }
+
+    @Override
+    public UUID read(JsonReader in) throws IOException {
+        return AdapterUtil.nextUUIDOrNull(in);
+    }
+}
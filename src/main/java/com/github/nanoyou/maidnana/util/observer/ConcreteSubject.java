@@ -1,23 +1,33 @@
 package com.github.nanoyou.maidnana.util.observer;
 
-import java.util.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public class ConcreteSubject implements Subject {
+/**
+ * 被观察者的默认实现<br />
+ * 观察者列表写时复制, 通知时无锁遍历; 通知在 {@link EventDispatcher} 线程上异步执行, 不会阻塞发布者
+ *
+ * @param <E> 事件类型
+ */
+public class ConcreteSubject<E> implements Subject<E> {
 
-    private final List<Observer> observers = Collections.synchronizedList(new LinkedList<>());
+    private final List<Observer<E>> observers = new CopyOnWriteArrayList<>();
 
     @Override
-    public void registerObserver(Observer observer) {
+    public void registerObserver(Observer<E> observer) {
         observers.add(observer);
     }
 
     @Override
-    public void removeObserver(Observer observer) {
+    public void removeObserver(Observer<E> observer) {
         observers.remove(observer);
     }
 
     @Override
-    public void notifyObservers() {
-        observers.forEach(Observer::update);
+    public void notifyObservers(E event) {
+        if (observers.isEmpty()) {
+            return;
+        }
+        EventDispatcher.dispatch(() -> observers.forEach(observer -> EventDispatcher.deliver(observer, event)));
     }
 }
@@ -0,0 +1,59 @@
+package com.github.nanoyou.maidnana.util.observer;
+
+import com.github.nanoyou.maidnana.MaidNana;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件分发线程, 所有被观察者共用一个线程, 事件按发布顺序送达<br />
+ * 线程在第一次分发时创建, shutdown 后再次分发会创建新的线程, 因此插件可以在同一个 JVM 中被禁用后重新启用
+ */
+public class EventDispatcher {
+    /**
+     * 当前的分发线程, 未创建或已停止时为 null, 受 EventDispatcher.class 保护
+     */
+    private static ExecutorService executor = null;
+
+    static synchronized void dispatch(Runnable task) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                var t = new Thread(r, "MaidNana-EventDispatcher");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        executor.execute(task);
+    }
+
+    static <E> void deliver(Observer<E> observer, E event) {
+        try {
+            observer.update(event);
+        } catch (RuntimeException e) {
+            MaidNana.INSTANCE.getLogger().error("事件处理失败", e);
+        }
+    }
+
+    /**
+     * 停止分发线程, 等待已发布的事件处理完
+     */
+    public static void shutdown() {
+        ExecutorService current;
+        synchronized (EventDispatcher.class) {
+            current = executor;
+            executor = null;
+        }
+        if (current == null) {
+            return;
+        }
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(10, TimeUnit.SECONDS)) {
+                MaidNana.INSTANCE.getLogger().warning("事件分发线程未能在 10 秒内结束");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
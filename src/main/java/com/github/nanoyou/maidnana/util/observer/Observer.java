@@ -1,5 +1,10 @@
 package com.github.nanoyou.maidnana.util.observer;
 
-public interface Observer {
-    void update();
+/**
+ * 观察者
+ *
+ * @param <E> 事件类型
+ */
+public interface Observer<E> {
+    void update(E event);
 }
@@ -1,7 +1,12 @@
 package com.github.nanoyou.maidnana.util.observer;
 
-public interface Subject {
-    void registerObserver(Observer observer);
-    void removeObserver(Observer observer);
-    void notifyObservers();
+/**
+ * 被观察者
+ *
+ * @param <E> 事件类型
+ */
+public interface Subject<E> {
+    void registerObserver(Observer<E> observer);
+    void removeObserver(Observer<E> observer);
+    void notifyObservers(E event);
 }
@@ -0,0 +1,241 @@
+package com.github.nanoyou.maidnana.util.scheduler;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 预编译的 cron 表达式, 语法与 cron4j 相同<br />
+ * 分 时 日 月 周, 共 5 个字段, 字段间用空白分隔; 多个表达式可用 '|' 连接, 满足任意一个即触发<br />
+ * 每个字段支持 *, 数值, 范围 a-b (a 大于 b 时跨越上限), 步长 /n, 逗号分隔的列表;
+ * 月份与星期支持英文缩写 (jan, mon), 日期字段支持 L 表示当月最后一天<br />
+ * 与 cron4j 一致, 日期与星期需同时满足<br />
+ * 编译后每个字段是一个位图, 计算下一次触发时间时按月、日、时、分逐级跳过不匹配的区间
+ */
+public final class CronExpression {
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun",
+            "jul", "aug", "sep", "oct", "nov", "dec"};
+    private static final String[] DAYS_OF_WEEK = {"sun", "mon", "tue", "wed", "thu", "fri", "sat"};
+    /**
+     * 最多向后查找的年数, 超过仍不匹配视为永不触发 (如 2 月 31 日)
+     */
+    private static final int MAX_YEARS = 8;
+
+    private final String expression;
+    private final List<Pattern> patterns;
+
+    private CronExpression(String expression, List<Pattern> patterns) {
+        this.expression = expression;
+        this.patterns = patterns;
+    }
+
+    /**
+     * 编译 cron 表达式
+     *
+     * @param expression 表达式
+     * @return 编译结果
+     * @throws IllegalArgumentException 表达式格式错误
+     */
+    public static CronExpression compile(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("cron 表达式为空");
+        }
+        var patterns = new ArrayList<Pattern>();
+        for (var part : expression.split("\\|")) {
+            patterns.add(Pattern.parse(part.trim()));
+        }
+        return new CronExpression(expression, patterns);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * 计算下一次触发时间
+     *
+     * @param afterMillis 从该时间之后开始查找(不含)
+     * @param zone        时区
+     * @return 下一次触发的时间戳(毫秒), 永不触发返回 -1
+     */
+    public long next(long afterMillis, ZoneId zone) {
+        long r = -1;
+        for (var pattern : patterns) {
+            var t = pattern.next(afterMillis, zone);
+            if (t >= 0 && (r < 0 || t < r)) {
+                r = t;
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * 单个表达式
+     */
+    private static final class Pattern {
+        private final long minutes;
+        private final long hours;
+        private final long daysOfMonth;
+        private final boolean lastDayOfMonth;
+        private final long months;
+        private final long daysOfWeek;
+
+        private Pattern(long minutes, long hours, long daysOfMonth, boolean lastDayOfMonth, long months, long daysOfWeek) {
+            this.minutes = minutes;
+            this.hours = hours;
+            this.daysOfMonth = daysOfMonth;
+            this.lastDayOfMonth = lastDayOfMonth;
+            this.months = months;
+            this.daysOfWeek = daysOfWeek;
+        }
+
+        static Pattern parse(String pattern) {
+            var fields = pattern.split("\\s+");
+            if (fields.length != 5) {
+                throw new IllegalArgumentException("cron 表达式应有 5 个字段: " + pattern);
+            }
+            var minutes = parseField(fields[0], 0, 59, null);
+            var hours = parseField(fields[1], 0, 23, null);
+            var lastDay = false;
+            var domField = fields[2];
+            // L 可以与其他日期一起出现在列表中, 如 1,15,L
+            var domParts = new ArrayList<String>();
+            for (var part : domField.split(",")) {
+                if (part.equalsIgnoreCase("L")) {
+                    lastDay = true;
+                } else {
+                    domParts.add(part);
+                }
+            }
+            var daysOfMonth = domParts.isEmpty() ? 0 : parseField(String.join(",", domParts), 1, 31, null);
+            var months = parseField(fields[3], 1, 12, MONTHS);
+            var daysOfWeek = parseField(fields[4], 0, 7, DAYS_OF_WEEK);
+            // 7 同样表示周日
+            if ((daysOfWeek & (1L << 7)) != 0) {
+                daysOfWeek = (daysOfWeek | 1L) & ~(1L << 7);
+            }
+            return new Pattern(minutes, hours, daysOfMonth, lastDay, months, daysOfWeek);
+        }
+
+        /**
+         * 解析字段为位图, 第 i 位表示值 i 匹配
+         */
+        private static long parseField(String field, int min, int max, String[] names) {
+            long bits = 0;
+            for (var element : field.split(",")) {
+                if (element.isEmpty()) {
+                    throw new IllegalArgumentException("空的 cron 字段元素: " + field);
+                }
+                var step = 1;
+                var slash = element.indexOf('/');
+                var range = element;
+                if (slash >= 0) {
+                    step = parseNumber(element.substring(slash + 1));
+                    if (step <= 0) {
+                        throw new IllegalArgumentException("步长必须大于 0: " + element);
+                    }
+                    range = element.substring(0, slash);
+                }
+                int from;
+                int to;
+                if (range.equals("*")) {
+                    from = min;
+                    to = max;
+                } else {
+                    var dash = range.indexOf('-');
+                    if (dash >= 0) {
+                        from = parseValue(range.substring(0, dash), min, max, names);
+                        to = parseValue(range.substring(dash + 1), min, max, names);
+                    } else {
+                        from = parseValue(range, min, max, names);
+                        // a/n 表示从 a 开始直到上限
+                        to = slash >= 0 ? max : from;
+                    }
+                }
+                // 起点大于终点时跨越上限, 如 22-2
+                var count = from <= to ? to - from : (max - from) + (to - min) + 1;
+                for (int i = 0; i <= count; i += step) {
+                    var v = from + i;
+                    if (v > max) {
+                        v = v - max - 1 + min;
+                    }
+                    bits |= 1L << v;
+                }
+            }
+            return bits;
+        }
+
+        private static int parseValue(String value, int min, int max, String[] names) {
+            if (names != null) {
+                var lower = value.toLowerCase(Locale.ROOT);
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].equals(lower)) {
+                        // 月份从 1 开始, 星期从 0 开始
+                        return i + (min == 1 ? 1 : 0);
+                    }
+                }
+            }
+            var v = parseNumber(value);
+            if (v < min || v > max) {
+                throw new IllegalArgumentException("cron 字段值 " + v + " 超出范围 " + min + "-" + max);
+            }
+            return v;
+        }
+
+        private static int parseNumber(String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无法解析 cron 字段值: " + value);
+            }
+        }
+
+        private boolean matchDay(LocalDateTime t) {
+            var dom = t.getDayOfMonth();
+            var domMatch = (daysOfMonth & (1L << dom)) != 0
+                    || (lastDayOfMonth && dom == t.toLocalDate().lengthOfMonth());
+            return domMatch && (daysOfWeek & (1L << (t.getDayOfWeek().getValue() % 7))) != 0;
+        }
+
+        long next(long afterMillis, ZoneId zone) {
+            var t = LocalDateTime.ofInstant(Instant.ofEpochMilli(afterMillis), zone)
+                    .truncatedTo(ChronoUnit.MINUTES)
+                    .plusMinutes(1);
+            var limit = t.plusYears(MAX_YEARS);
+            while (t.isBefore(limit)) {
+                if ((months & (1L << t.getMonthValue())) == 0) {
+                    t = t.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+                    continue;
+                }
+                if (!matchDay(t)) {
+                    t = t.toLocalDate().plusDays(1).atStartOfDay();
+                    continue;
+                }
+                if ((hours & (1L << t.getHour())) == 0) {
+                    t = t.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                    continue;
+                }
+                if ((minutes & (1L << t.getMinute())) == 0) {
+                    t = t.plusMinutes(1);
+                    continue;
+                }
+                var millis = t.atZone(zone).toInstant().toEpochMilli();
+                // 夏令时回拨时本地时间会重复, 跳过已经过去的时刻
+                if (millis > afterMillis) {
+                    return millis;
+                }
+                t = t.plusMinutes(1);
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.github.nanoyou.maidnana.util.scheduler;
+
+import com.github.nanoyou.maidnana.MaidNana;
+
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于最小堆的 cron 调度器, 替代 cron4j 每分钟轮询全部表达式的做法<br />
+ * 每个任务记录下一次触发时间, 按时间放入最小堆; 调度线程只在堆顶任务到期时醒来,
+ * 增删任务 O(log n), 触发精度取决于系统定时器, 不再局限于整分钟轮询<br />
+ * 任务在构造时传入的 Executor 上执行, 调度线程不会被任务阻塞
+ */
+public class CronScheduler {
+    private final Executor executor;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>((a, b) -> Long.compare(a.nextFire, b.nextFire));
+    private final Map<String, Entry> entries = new HashMap<>();
+    /**
+     * 堆中已取消但尚未移除的任务数
+     */
+    private int cancelled = 0;
+    private Thread thread = null;
+
+    private static final class Entry {
+        final String id;
+        final CronExpression expression;
+        final Runnable task;
+        long nextFire;
+        boolean cancelled = false;
+
+        Entry(String id, CronExpression expression, Runnable task, long nextFire) {
+            this.id = id;
+            this.expression = expression;
+            this.task = task;
+            this.nextFire = nextFire;
+        }
+    }
+
+    /**
+     * @param executor 执行任务的线程池
+     */
+    public CronScheduler(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 调度任务
+     *
+     * @param expression 编译好的 cron 表达式
+     * @param task       任务
+     * @return 任务ID, 用于取消调度
+     */
+    public String schedule(CronExpression expression, Runnable task) {
+        var id = UUID.randomUUID().toString();
+        var next = expression.next(System.currentTimeMillis(), zone);
+        lock.lock();
+        try {
+            var entry = new Entry(id, expression, task, next);
+            entries.put(id, entry);
+            if (next >= 0) {
+                queue.add(entry);
+                if (queue.peek() == entry) {
+                    changed.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return id;
+    }
+
+    /**
+     * 取消调度, 任务在堆中惰性删除
+     *
+     * @param id 任务ID
+     */
+    public void deschedule(String id) {
+        lock.lock();
+        try {
+            var entry = entries.remove(id);
+            if (entry == null || entry.nextFire < 0) {
+                return;
+            }
+            entry.cancelled = true;
+            cancelled++;
+            // 已取消的任务过多时重建堆, 避免频繁增删导致堆无限增长
+            if (cancelled > 64 && cancelled > queue.size() / 2) {
+                queue.removeIf(e -> e.cancelled);
+                cancelled = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 已调度的任务数
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 最早的下一次触发时间戳(毫秒), 没有待触发的任务返回 -1
+     */
+    public long getNextFire() {
+        lock.lock();
+        try {
+            var head = queue.peek();
+            while (head != null && head.cancelled) {
+                queue.poll();
+                cancelled--;
+                head = queue.peek();
+            }
+            return head == null ? -1 : head.nextFire;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void start() {
+        lock.lock();
+        try {
+            if (thread != null) {
+                return;
+            }
+            thread = new Thread(this::run, "MaidNana-Scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isStarted() {
+        lock.lock();
+        try {
+            return thread != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止调度线程, 已调度的任务保留, 再次 start 后继续调度
+     */
+    public void stop() {
+        Thread t;
+        lock.lock();
+        try {
+            t = thread;
+            thread = null;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (t == null) {
+            return;
+        }
+        t.interrupt();
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        var self = Thread.currentThread();
+        while (true) {
+            Entry due;
+            lock.lock();
+            try {
+                while (true) {
+                    if (thread != self) {
+                        return;
+                    }
+                    var head = queue.peek();
+                    if (head == null) {
+                        changed.await();
+                        continue;
+                    }
+                    if (head.cancelled) {
+                        queue.poll();
+                        cancelled--;
+                        continue;
+                    }
+                    var delay = head.nextFire - System.currentTimeMillis();
+                    if (delay > 0) {
+                        changed.awaitNanos(TimeUnit.MILLISECONDS.toNanos(delay));
+                        continue;
+                    }
+                    due = queue.poll();
+                    break;
+                }
+                // 错过多次触发(如系统休眠)时只补发一次, 下一次从现在开始计算
+                due.nextFire = due.expression.next(Math.max(due.nextFire, System.currentTimeMillis()), zone);
+                if (due.nextFire >= 0) {
+                    queue.add(due);
+                } else {
+                    entries.remove(due.id);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                executor.execute(due.task);
+            } catch (RuntimeException e) {
+                MaidNana.INSTANCE.getLogger().error("无法执行定时任务 " + due.id, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.nanoyou.maidnana.util.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的模板<br />
+ * 模板文本在编译时切分为字面量与变量两种片段, 变量的格式为 $变量名$, 变量名非空且不含 $ 与换行;
+ * 不构成变量的 $ 保留为字面量<br />
+ * 渲染时按片段顺序一次拼接, 变量值原样写入, 不会被当作正则或再次替换; 未赋值的变量替换为空
+ */
+public final class CompiledTemplate {
+    private final String source;
+    /**
+     * 片段, 偶数下标为字面量, 奇数下标为变量名
+     */
+    private final String[] segments;
+    /**
+     * 全部字面量的总长度
+     */
+    private final int literalLength;
+
+    private CompiledTemplate(String source, String[] segments, int literalLength) {
+        this.source = source;
+        this.segments = segments;
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param source 模板文本
+     * @return 编译结果
+     */
+    public static CompiledTemplate compile(String source) {
+        var segments = new ArrayList<String>();
+        var literal = new StringBuilder();
+        int literalLength = 0;
+        int i = 0;
+        while (i < source.length()) {
+            var c = source.charAt(i);
+            if (c == '$') {
+                var end = findSlotEnd(source, i + 1);
+                if (end > i + 1) {
+                    literalLength += literal.length();
+                    segments.add(literal.toString());
+                    segments.add(source.substring(i + 1, end));
+                    literal.setLength(0);
+                    i = end + 1;
+                    continue;
+                }
+            }
+            literal.append(c);
+            i++;
+        }
+        literalLength += literal.length();
+        segments.add(literal.toString());
+        return new CompiledTemplate(source, segments.toArray(new String[0]), literalLength);
+    }
+
+    /**
+     * @return 变量结束的 $ 的下标, 不构成变量返回 -1
+     */
+    private static int findSlotEnd(String source, int from) {
+        for (int i = from; i < source.length(); i++) {
+            var c = source.charAt(i);
+            if (c == '$') {
+                return i;
+            }
+            if (c == '\n' || c == '\r') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 编译时使用的模板文本
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return 模板中出现的变量名, 按出现顺序, 可能重复
+     */
+    public List<String> getVariables() {
+        var r = new ArrayList<String>(segments.length / 2);
+        for (int i = 1; i < segments.length; i += 2) {
+            r.add(segments[i]);
+        }
+        return r;
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param var 变量, 可以为 null
+     * @return 渲染结果
+     */
+    public String render(Map<String, String> var) {
+        if (segments.length == 1) {
+            return segments[0];
+        }
+        String[] values = new String[segments.length];
+        int length = literalLength;
+        for (int i = 1; i < segments.length; i += 2) {
+            var v = var == null ? null : var.get(segments[i]);
+            values[i] = v;
+            if (v != null) {
+                length += v.length();
+            }
+        }
+        var sb = new StringBuilder(length);
+        for (int i = 0; i < segments.length; i++) {
+            if ((i & 1) == 0) {
+                sb.append(segments[i]);
+            } else if (values[i] != null) {
+                sb.append(values[i]);
+            }
+        }
+        return sb.toString();
+    }
+}
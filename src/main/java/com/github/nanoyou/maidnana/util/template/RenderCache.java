@@ -0,0 +1,143 @@
+package com.github.nanoyou.maidnana.util.template;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 渲染结果缓存<br />
+ * 以 (模板ID, 编译结果, 变量) 为键, 模板修改后会重新编译, 编译结果不同即视为新的版本,
+ * 因此修改模板或变量后旧的结果自然不会再被命中<br />
+ * 按最近最少使用淘汰, 同时限制条目数与缓存文本的总长度
+ */
+public class RenderCache {
+    private final int maxEntries;
+    private final long maxChars;
+    private final LinkedHashMap<Key, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 模板ID -> 该模板的全部键, 使移除一个模板的结果时不必遍历整个缓存
+     */
+    private final Map<UUID, Set<Key>> byTemplate = new HashMap<>();
+    private long chars = 0;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record Key(UUID templateID, CompiledTemplate template, Map<String, String> var) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k
+                    && templateID.equals(k.templateID)
+                    && template == k.template
+                    && var.equals(k.var);
+        }
+
+        @Override
+        public int hashCode() {
+            return (templateID.hashCode() * 31 + System.identityHashCode(template)) * 31 + var.hashCode();
+        }
+    }
+
+    /**
+     * @param maxEntries 最多缓存的条目数
+     * @param maxChars   缓存文本的总长度上限
+     */
+    public RenderCache(int maxEntries, long maxChars) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * 获取渲染结果, 未命中时渲染并放入缓存<br />
+     * 渲染在锁外进行, 并发未命中时可能重复渲染, 结果相同
+     *
+     * @param templateID 模板ID
+     * @param template   当前的编译结果
+     * @param var        变量, 可以为 null
+     * @param render     渲染
+     * @return 渲染结果
+     */
+    public String get(UUID templateID, CompiledTemplate template, Map<String, String> var, Supplier<String> render) {
+        var lookup = new Key(templateID, template, var == null ? Map.of() : var);
+        synchronized (this) {
+            var r = entries.get(lookup);
+            if (r != null) {
+                hits.increment();
+                return r;
+            }
+        }
+        misses.increment();
+        var r = render.get();
+        if (r.length() > maxChars) {
+            return r;
+        }
+        // 复制一份变量, 调用方之后修改变量不会影响缓存的键
+        var key = new Key(templateID, template, Collections.unmodifiableMap(new HashMap<>(lookup.var())));
+        synchronized (this) {
+            var old = entries.put(key, r);
+            if (old != null) {
+                chars -= old.length();
+            } else {
+                byTemplate.computeIfAbsent(templateID, k -> new HashSet<>()).add(key);
+            }
+            chars += r.length();
+            var it = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || chars > maxChars) && it.hasNext()) {
+                var e = it.next();
+                chars -= e.getValue().length();
+                it.remove();
+                forget(e.getKey());
+            }
+        }
+        return r;
+    }
+
+    /**
+     * 移除模板的全部结果
+     *
+     * @param templateID 模板ID
+     */
+    public synchronized void invalidate(UUID templateID) {
+        var keys = byTemplate.remove(templateID);
+        if (keys == null) {
+            return;
+        }
+        for (var key : keys) {
+            var r = entries.remove(key);
+            if (r != null) {
+                chars -= r.length();
+            }
+        }
+    }
+
+    /**
+     * 从模板的键集合中移除被淘汰的键, 调用时需持有锁
+     */
+    private void forget(Key key) {
+        var keys = byTemplate.get(key.templateID());
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            byTemplate.remove(key.templateID());
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getChars() {
+        return chars;
+    }
+}
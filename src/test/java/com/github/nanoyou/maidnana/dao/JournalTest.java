@@ -0,0 +1,140 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.entity.OutboxEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    @TempDir
+    Path folder;
+
+    static OutboxEntry entry(long groupID) {
+        var e = new OutboxEntry();
+        e.setUuid(UUID.randomUUID());
+        e.setAnnouncementID(UUID.randomUUID());
+        e.setFireID(UUID.randomUUID());
+        e.setGroupID(groupID);
+        e.setCreatedAt(1000);
+        return e;
+    }
+
+    private Journal<OutboxEntry> open() {
+        return new Journal<>(folder.resolve("test.journal"), OutboxEntry.class);
+    }
+
+    private Map<UUID, OutboxEntry> replay() {
+        var data = new LinkedHashMap<UUID, OutboxEntry>();
+        open().replay(data);
+        return data;
+    }
+
+    private static Map<UUID, OutboxEntry> delete(UUID id) {
+        var changes = new HashMap<UUID, OutboxEntry>();
+        changes.put(id, null);
+        return changes;
+    }
+
+    @Test
+    void appendThenReplay() {
+        var a = entry(1);
+        var b = entry(2);
+        var journal = open();
+        var batch = new LinkedHashMap<UUID, OutboxEntry>();
+        batch.put(a.getUuid(), a);
+        batch.put(b.getUuid(), b);
+        journal.append(batch);
+        journal.append(delete(a.getUuid()));
+        assertEquals(3, journal.size());
+        journal.close();
+
+        var data = replay();
+        assertEquals(1, data.size());
+        assertEquals(b, data.get(b.getUuid()));
+    }
+
+    @Test
+    void laterRecordWins() {
+        var a = entry(1);
+        var journal = open();
+        journal.append(Map.of(a.getUuid(), a));
+        var changed = a.copy();
+        changed.setAttempts(3);
+        journal.append(Map.of(a.getUuid(), changed));
+        journal.close();
+
+        assertEquals(3, replay().get(a.getUuid()).getAttempts());
+    }
+
+    @Test
+    void replayWithoutFiles() {
+        var journal = open();
+        var data = new HashMap<UUID, OutboxEntry>();
+        journal.replay(data);
+        assertTrue(data.isEmpty());
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    void rotatedRecordsReplayedUntilRotationCompletes() {
+        var a = entry(1);
+        var b = entry(2);
+        var journal = open();
+        journal.append(Map.of(a.getUuid(), a));
+        journal.rotate();
+        assertEquals(0, journal.size());
+        journal.append(Map.of(b.getUuid(), b));
+        journal.close();
+
+        // 合并期间退出: 待合并日志先于当前日志重放
+        var data = replay();
+        assertEquals(2, data.size());
+        assertTrue(data.containsKey(a.getUuid()));
+
+        journal.completeRotation();
+        assertTrue(Files.notExists(folder.resolve("test.journal.compacting")));
+        data = replay();
+        assertEquals(1, data.size());
+        assertTrue(data.containsKey(b.getUuid()));
+    }
+
+    @Test
+    void failedRotationIsKept() {
+        var a = entry(1);
+        var b = entry(2);
+        var journal = open();
+        journal.append(Map.of(a.getUuid(), a));
+        journal.rotate();
+        // 上一次合并没有完成, 再次轮换时追加到待合并日志而不是覆盖
+        journal.append(Map.of(b.getUuid(), b));
+        journal.append(delete(a.getUuid()));
+        journal.rotate();
+        assertTrue(Files.notExists(folder.resolve("test.journal")));
+
+        var data = replay();
+        assertEquals(1, data.size());
+        assertTrue(data.containsKey(b.getUuid()));
+    }
+
+    @Test
+    void replayCountsRecords() {
+        var journal = open();
+        for (int i = 0; i < 5; i++) {
+            var e = entry(i);
+            journal.append(Map.of(e.getUuid(), e));
+        }
+        journal.close();
+
+        var reopened = open();
+        reopened.replay(new HashMap<>());
+        assertEquals(5, reopened.size());
+    }
+}
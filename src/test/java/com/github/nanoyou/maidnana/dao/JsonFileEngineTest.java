@@ -0,0 +1,154 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.entity.OutboxEntry;
+import com.google.gson.reflect.TypeToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.github.nanoyou.maidnana.dao.JournalTest.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 以 {@link OutboxEntry} 作为实体, 测试进程在合并日志之前退出后的恢复
+ */
+class JsonFileEngineTest {
+    private static final Type TYPE = new TypeToken<List<OutboxEntry>>() {
+    }.getType();
+
+    @TempDir
+    Path folder;
+    private Path path;
+    private Path journalPath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = folder.resolve("entries.json");
+        journalPath = folder.resolve("entries.json.journal");
+        Files.writeString(path, "[]");
+    }
+
+    private JsonFileEngine<OutboxEntry> open() {
+        return new JsonFileEngine<>(path, TYPE, OutboxEntry.class);
+    }
+
+    /**
+     * 加载全部值, 之后启动引擎, 引擎以返回的表为 Dao 的快照
+     */
+    private static Map<UUID, OutboxEntry> loadAndStart(JsonFileEngine<OutboxEntry> engine) {
+        var data = new LinkedHashMap<UUID, OutboxEntry>();
+        engine.load(v -> data.put(v.getUuid(), v));
+        engine.start(() -> new ArrayList<>(data.values()));
+        return data;
+    }
+
+    private static Map<UUID, OutboxEntry> delete(UUID id) {
+        var changes = new HashMap<UUID, OutboxEntry>();
+        changes.put(id, null);
+        return changes;
+    }
+
+    @Test
+    void leftoverJournalIsReplayedAndCompacted() throws IOException {
+        var a = entry(1);
+        var b = entry(2);
+        var engine = open();
+        var data = loadAndStart(engine);
+        data.put(a.getUuid(), a);
+        engine.commit(Map.of(a.getUuid(), a));
+        data.put(b.getUuid(), b);
+        engine.commit(Map.of(b.getUuid(), b));
+        data.remove(a.getUuid());
+        engine.commit(delete(a.getUuid()));
+        // 不关闭引擎, 模拟进程退出, 日志留在数据文件旁
+        assertEquals("[]", Files.readString(path));
+        assertTrue(Files.size(journalPath) > 0);
+
+        var recovered = loadAndStart(open());
+        assertEquals(Map.of(b.getUuid(), b), recovered);
+        // 启动时已把日志合并进数据文件
+        assertTrue(Files.notExists(journalPath) || Files.size(journalPath) == 0);
+        assertTrue(Files.notExists(folder.resolve("entries.json.journal.compacting")));
+        assertTrue(Files.readString(path).contains(b.getUuid().toString()));
+
+        var reloaded = new LinkedHashMap<UUID, OutboxEntry>();
+        open().load(v -> reloaded.put(v.getUuid(), v));
+        assertEquals(recovered, reloaded);
+    }
+
+    @Test
+    void journalOverridesDataFile() {
+        var a = entry(1);
+        var b = entry(2);
+        var engine = open();
+        var data = loadAndStart(engine);
+        data.put(a.getUuid(), a);
+        data.put(b.getUuid(), b);
+        engine.commit(new LinkedHashMap<>(data));
+        engine.close();
+
+        // 数据文件中已有 a 与 b, 日志修改 a 并删除 b
+        engine = open();
+        data = loadAndStart(engine);
+        var changed = a.copy();
+        changed.setAttempts(2);
+        data.put(a.getUuid(), changed);
+        engine.commit(Map.of(a.getUuid(), changed));
+        data.remove(b.getUuid());
+        engine.commit(delete(b.getUuid()));
+
+        var recovered = new LinkedHashMap<UUID, OutboxEntry>();
+        open().load(v -> recovered.put(v.getUuid(), v));
+        assertEquals(1, recovered.size());
+        assertEquals(2, recovered.get(a.getUuid()).getAttempts());
+    }
+
+    @Test
+    void interruptedCompactionIsRecovered() throws IOException {
+        var a = entry(1);
+        var b = entry(2);
+        // 模拟合并时轮换了日志但数据文件还没写入就退出: a 与 b 在待合并日志中, 之后的 c 在新的日志中
+        var compacting = folder.resolve("entries.json.journal.compacting");
+        var rotated = new Journal<OutboxEntry>(compacting, OutboxEntry.class);
+        rotated.append(Map.of(a.getUuid(), a));
+        rotated.append(Map.of(b.getUuid(), b));
+        rotated.close();
+        var c = entry(3);
+        var journal = new Journal<OutboxEntry>(journalPath, OutboxEntry.class);
+        journal.append(Map.of(c.getUuid(), c));
+        journal.append(delete(a.getUuid()));
+        journal.close();
+
+        var recovered = loadAndStart(open());
+        assertEquals(Map.of(b.getUuid(), b, c.getUuid(), c), recovered);
+        assertTrue(Files.notExists(compacting));
+        assertTrue(Files.readString(path).contains(c.getUuid().toString()));
+    }
+
+    @Test
+    void scanReturnsRangeInOrder() {
+        var engine = open();
+        var data = loadAndStart(engine);
+        for (int i = 0; i < 20; i++) {
+            var e = entry(i);
+            data.put(e.getUuid(), e);
+        }
+        var sorted = data.keySet().stream().map(UUID::toString).sorted().toList();
+        var from = UUID.fromString(sorted.get(5));
+        var to = UUID.fromString(sorted.get(14));
+        var scanned = new ArrayList<String>();
+        engine.scan(from, to, v -> scanned.add(v.getUuid().toString()));
+        assertEquals(sorted.subList(5, 15), scanned);
+    }
+}
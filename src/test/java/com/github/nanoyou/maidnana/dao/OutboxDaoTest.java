@@ -0,0 +1,166 @@
+package com.github.nanoyou.maidnana.dao;
+
+import com.github.nanoyou.maidnana.entity.OutboxEntry;
+import com.github.nanoyou.maidnana.entity.OutboxFire;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxDaoTest {
+    @TempDir
+    Path folder;
+
+    private static OutboxFire fire(String text) {
+        var fire = new OutboxFire();
+        fire.setUuid(UUID.randomUUID());
+        fire.setAnnouncementID(UUID.randomUUID());
+        fire.setText(text);
+        fire.setCreatedAt(System.currentTimeMillis());
+        return fire;
+    }
+
+    private static List<OutboxEntry> entries(OutboxFire fire, int count) {
+        var r = new ArrayList<OutboxEntry>();
+        for (int i = 0; i < count; i++) {
+            var e = new OutboxEntry();
+            e.setUuid(UUID.randomUUID());
+            e.setAnnouncementID(fire.getAnnouncementID());
+            e.setFireID(fire.getUuid());
+            e.setBotID(1);
+            e.setGroupID(100 + i);
+            e.setCreatedAt(fire.getCreatedAt());
+            r.add(e);
+        }
+        return r;
+    }
+
+    /**
+     * 不关闭直接重新打开, 模拟进程退出后重启
+     */
+    private OutboxDao restart() {
+        return new OutboxDao(folder);
+    }
+
+    @Test
+    void pendingEntriesResumeAfterRestart() {
+        var dao = new OutboxDao(folder);
+        var fire = fire("公告");
+        var entries = entries(fire, 3);
+        dao.add(fire, entries);
+
+        var resumed = restart();
+        assertEquals(3, resumed.getPendingCount());
+        assertEquals(entries, resumed.getPending());
+        for (var e : resumed.getPending()) {
+            assertEquals("公告", resumed.getText(e));
+            // 公告内容只写入触发日志, 不随每条消息重复
+            assertNull(e.getText());
+        }
+    }
+
+    @Test
+    void ackedEntriesAreNotResumed() {
+        var dao = new OutboxDao(folder);
+        var fire = fire("公告");
+        var entries = entries(fire, 2);
+        dao.add(fire, entries);
+        dao.ack(entries.get(0).getUuid());
+
+        var resumed = restart();
+        assertEquals(List.of(entries.get(1)), resumed.getPending());
+        assertEquals("公告", resumed.getText(entries.get(1)));
+
+        resumed.ack(entries.get(1).getUuid());
+        assertEquals(0, resumed.getPendingCount());
+        // 没有消息引用后触发也被删除
+        assertNull(resumed.getText(entries.get(1)));
+        assertEquals(0, restart().getPendingCount());
+    }
+
+    @Test
+    void updateIsResumed() {
+        var dao = new OutboxDao(folder);
+        var fire = fire("公告");
+        var entry = entries(fire, 1).get(0);
+        dao.add(fire, List.of(entry));
+        var next = entry.copy();
+        next.setAttempts(2);
+        next.setLastError("超时");
+        dao.update(next);
+
+        var resumed = restart().getPending().get(0);
+        assertEquals(2, resumed.getAttempts());
+        assertEquals("超时", resumed.getLastError());
+    }
+
+    @Test
+    void updateAfterAckIsIgnored() {
+        var dao = new OutboxDao(folder);
+        var fire = fire("公告");
+        var entry = entries(fire, 1).get(0);
+        dao.add(fire, List.of(entry));
+        dao.ack(entry.getUuid());
+        dao.update(entry.copy());
+        assertEquals(0, restart().getPendingCount());
+    }
+
+    @Test
+    void killedEntriesBecomeDeadLetters() {
+        var dao = new OutboxDao(folder);
+        var fire = fire("公告");
+        var entries = entries(fire, 2);
+        dao.add(fire, entries);
+        dao.kill(entries.get(0));
+        assertEquals(1, dao.getPendingCount());
+        assertEquals(1, dao.getDeadCount());
+        // 已移入死信的消息不会再次移入
+        dao.kill(entries.get(0));
+        assertEquals(1, dao.getDeadCount());
+
+        var resumed = restart();
+        assertEquals(List.of(entries.get(1)), resumed.getPending());
+        assertEquals(1, resumed.getDeadCount());
+        // 仍有消息引用触发, 内容保留
+        assertEquals("公告", resumed.getText(entries.get(1)));
+
+        resumed.kill(entries.get(1));
+        var reopened = restart();
+        assertEquals(0, reopened.getPendingCount());
+        assertEquals(2, reopened.getDeadCount());
+    }
+
+    @Test
+    void deadLettersCarryText() throws Exception {
+        var dao = new OutboxDao(folder);
+        var fire = fire("死信内容");
+        var entry = entries(fire, 1).get(0);
+        dao.add(fire, List.of(entry));
+        dao.kill(entry);
+        dao.close();
+        // 重启时合并日志, 触发已被删除, 只有死信日志中保存了公告内容
+        restart().close();
+        assertTrue(Files.readString(folder.resolve("outbox-dead.journal")).contains("死信内容"));
+        var fires = folder.resolve("outbox-fire.journal");
+        assertTrue(Files.notExists(fires) || !Files.readString(fires).contains("死信内容"));
+    }
+
+    @Test
+    void expiredDeadLettersAreDroppedOnStart() {
+        var dao = new OutboxDao(folder);
+        var fire = fire("公告");
+        fire.setCreatedAt(0);
+        var entry = entries(fire, 1).get(0);
+        dao.add(fire, List.of(entry));
+        dao.kill(entry);
+        // 创建时间为 0, 已超过死信的保留时间
+        assertEquals(0, dao.getDeadCount());
+        assertEquals(0, restart().getDeadCount());
+    }
+}
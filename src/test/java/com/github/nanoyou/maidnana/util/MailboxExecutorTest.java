@@ -0,0 +1,97 @@
+package com.github.nanoyou.maidnana.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailboxExecutorTest {
+    @Test
+    void sameKeyRunsInOrder() {
+        var executor = new MailboxExecutor<Integer>("Test", 4);
+        var keys = 8;
+        var tasks = 2000;
+        var results = new ArrayList<List<Integer>>();
+        for (int k = 0; k < keys; k++) {
+            results.add(new ArrayList<>());
+        }
+        for (int i = 0; i < tasks; i++) {
+            for (int k = 0; k < keys; k++) {
+                var seq = i;
+                // 同一个键串行执行, 列表不需要同步
+                var list = results.get(k);
+                executor.execute(k, () -> list.add(seq));
+            }
+        }
+        executor.shutdown();
+        for (var list : results) {
+            assertEquals(tasks, list.size());
+            for (int i = 0; i < tasks; i++) {
+                assertEquals(i, list.get(i));
+            }
+        }
+        assertEquals((long) keys * tasks, executor.getCompleted());
+        assertEquals(0, executor.getPending());
+        assertEquals(0, executor.getActiveMailboxes());
+    }
+
+    @Test
+    void differentKeysRunInParallel() throws InterruptedException {
+        var executor = new MailboxExecutor<String>("Test", 2);
+        var other = new CountDownLatch(1);
+        var done = new CountDownLatch(1);
+        // a 的任务等待 b 的任务执行, 串行执行会超时
+        executor.execute("a", () -> {
+            try {
+                if (other.await(5, TimeUnit.SECONDS)) {
+                    done.countDown();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute("b", other::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    void taskWaitsForEarlierTaskOfSameKey() throws InterruptedException {
+        var executor = new MailboxExecutor<String>("Test", 2);
+        var release = new CountDownLatch(1);
+        var order = new ArrayList<String>();
+        executor.execute("a", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            order.add("first");
+        });
+        executor.execute("a", () -> order.add("second"));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(2, executor.getPending());
+        assertEquals(2, executor.getMaxDepth());
+        release.countDown();
+        executor.shutdown();
+        assertEquals(List.of("first", "second"), order);
+    }
+
+    @Test
+    void rejectedAfterShutdown() {
+        var executor = new MailboxExecutor<String>("Test", 1);
+        var ran = new ArrayList<String>();
+        executor.execute("a", () -> ran.add("before"));
+        executor.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> executor.execute("a", () -> ran.add("after")));
+        assertThrows(RejectedExecutionException.class, () -> executor.execute("b", () -> ran.add("after")));
+        assertEquals(List.of("before"), ran);
+        assertEquals(0, executor.getPending());
+        assertEquals(0, executor.getActiveMailboxes());
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.nanoyou.maidnana.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentMapTest {
+    /**
+     * 可以指定哈希值的键
+     */
+    private record Key(String name, int hash) {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Test
+    void plusAndMinus() {
+        var m0 = PersistentMap.<String, Integer>empty();
+        var m1 = m0.plus("a", 1);
+        var m2 = m1.plus("b", 2);
+        assertEquals(2, m2.size());
+        assertEquals(1, m2.get("a"));
+        assertEquals(2, m2.get("b"));
+        // 旧版本不受影响
+        assertTrue(m0.isEmpty());
+        assertNull(m1.get("b"));
+
+        var m3 = m2.minus("a");
+        assertEquals(1, m3.size());
+        assertNull(m3.get("a"));
+        assertEquals(1, m2.get("a"));
+    }
+
+    @Test
+    void unchangedReturnsSelf() {
+        var value = Integer.valueOf(1);
+        var m = PersistentMap.<String, Integer>empty().plus("a", value);
+        assertSame(m, m.plus("a", value));
+        assertSame(m, m.minus("b"));
+    }
+
+    @Test
+    void replaceKeepsSize() {
+        var m = PersistentMap.<String, Integer>empty().plus("a", 1).plus("a", 2);
+        assertEquals(1, m.size());
+        assertEquals(2, m.get("a"));
+    }
+
+    @Test
+    void fullHashCollision() {
+        var a = new Key("a", 42);
+        var b = new Key("b", 42);
+        var c = new Key("c", 42);
+        var m = PersistentMap.<Key, String>empty().plus(a, "a").plus(b, "b").plus(c, "c");
+        assertEquals(3, m.size());
+        assertEquals("a", m.get(a));
+        assertEquals("b", m.get(b));
+        assertEquals("c", m.get(c));
+        assertNull(m.get(new Key("d", 42)));
+
+        m = m.plus(b, "b2");
+        assertEquals(3, m.size());
+        assertEquals("b2", m.get(b));
+
+        var removed = m.minus(b);
+        assertEquals(2, removed.size());
+        assertNull(removed.get(b));
+        assertEquals("a", removed.get(a));
+        assertEquals("c", removed.get(c));
+        assertSame(removed, removed.minus(new Key("d", 42)));
+
+        var empty = removed.minus(a).minus(c);
+        assertTrue(empty.isEmpty());
+        assertNull(empty.get(a));
+        assertTrue(empty.values().isEmpty());
+    }
+
+    @Test
+    void partialHashCollision() {
+        // 低位相同、高位不同, 需要多层节点才能区分
+        var a = new Key("a", 0x0000_0001);
+        var b = new Key("b", 0x0100_0001);
+        var c = new Key("c", 0x4000_0001);
+        var m = PersistentMap.<Key, String>empty().plus(a, "a").plus(b, "b").plus(c, "c");
+        assertEquals(3, m.size());
+        assertEquals("a", m.get(a));
+        assertEquals("b", m.get(b));
+        assertEquals("c", m.get(c));
+
+        m = m.minus(b);
+        assertEquals(2, m.size());
+        assertNull(m.get(b));
+        assertEquals("a", m.get(a));
+        assertEquals("c", m.get(c));
+    }
+
+    @Test
+    void matchesHashMap() {
+        // 哈希值只有 16 种, 大量键互相冲突
+        var random = new Random(1);
+        var expected = new HashMap<Key, Integer>();
+        var m = PersistentMap.<Key, Integer>empty();
+        for (int i = 0; i < 5000; i++) {
+            var key = new Key("k" + random.nextInt(300), 0);
+            key = new Key(key.name(), key.name().hashCode() & 0x0F0F);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                m = m.minus(key);
+            } else {
+                expected.put(key, i);
+                m = m.plus(key, i);
+            }
+            assertEquals(expected.size(), m.size());
+        }
+        for (var e : expected.entrySet()) {
+            assertEquals(e.getValue(), m.get(e.getKey()));
+        }
+        var keys = new HashSet<Key>();
+        m.forEach((k, v) -> assertTrue(keys.add(k)));
+        assertEquals(expected.keySet(), keys);
+        assertEquals(expected.size(), m.values().size());
+    }
+}
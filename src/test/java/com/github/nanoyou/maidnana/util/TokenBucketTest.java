@@ -0,0 +1,77 @@
+package com.github.nanoyou.maidnana.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用手动推进的时钟, 只检查计算出的等待时间
+ */
+class TokenBucketTest {
+    private long now = 0;
+
+    private TokenBucket bucket(double permitsPerSecond, int burst) {
+        return new TokenBucket(permitsPerSecond, burst, () -> now);
+    }
+
+    private void advanceMillis(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    void burstIsAvailableImmediately() {
+        var bucket = bucket(1, 5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire());
+        }
+        assertEquals(TimeUnit.SECONDS.toNanos(1), bucket.tryAcquire());
+    }
+
+    @Test
+    void refillsAtRate() {
+        var bucket = bucket(20, 1);
+        assertEquals(0, bucket.tryAcquire());
+        // 每 50 毫秒生成一个令牌
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50), bucket.tryAcquire());
+        advanceMillis(20);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(30), bucket.tryAcquire());
+        advanceMillis(30);
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50), bucket.tryAcquire());
+    }
+
+    @Test
+    void idleRefillIsCappedAtBurst() {
+        var bucket = bucket(10, 2);
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        // 空闲 5 秒可生成 50 个令牌, 但最多积攒 2 个
+        advanceMillis(5000);
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.tryAcquire());
+    }
+
+    @Test
+    void waitingDoesNotConsumeTokens() {
+        var bucket = bucket(10, 1);
+        assertEquals(0, bucket.tryAcquire());
+        // 多次查询等待时间不会让令牌变为负数
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.tryAcquire());
+        }
+        advanceMillis(100);
+        assertEquals(0, bucket.tryAcquire());
+    }
+
+    @Test
+    void acquireReturnsWithoutWaitingWhenTokenAvailable() throws InterruptedException {
+        var bucket = bucket(1, 1);
+        bucket.acquire();
+        advanceMillis(1000);
+        bucket.acquire();
+        assertEquals(TimeUnit.SECONDS.toNanos(1), bucket.tryAcquire());
+    }
+}
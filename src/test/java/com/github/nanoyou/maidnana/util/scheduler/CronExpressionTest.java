@@ -0,0 +1,93 @@
+package com.github.nanoyou.maidnana.util.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CronExpressionTest {
+    private static final ZoneId UTC = ZoneOffset.UTC;
+
+    private static long millis(String time) {
+        return LocalDateTime.parse(time).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static String next(String expression, String after) {
+        var t = CronExpression.compile(expression).next(millis(after), UTC);
+        return t < 0 ? null : LocalDateTime.ofEpochSecond(t / 1000, 0, ZoneOffset.UTC).toString();
+    }
+
+    @Test
+    void nextIsStrictlyAfter() {
+        assertEquals("2024-01-01T00:01", next("* * * * *", "2024-01-01T00:00"));
+        assertEquals("2024-01-02T00:00", next("0 0 * * *", "2024-01-01T00:00"));
+        assertEquals("2024-01-01T00:15", next("*/15 * * * *", "2024-01-01T00:00:30"));
+    }
+
+    @Test
+    void lastDayOfMonth() {
+        assertEquals("2024-02-29T00:00", next("0 0 L * *", "2024-02-10T00:00"));
+        assertEquals("2023-02-28T00:00", next("0 0 L * *", "2023-02-10T00:00"));
+        assertEquals("2024-04-30T00:00", next("0 0 L * *", "2024-03-31T00:00"));
+        // L 与其他日期组成列表
+        assertEquals("2024-04-15T00:00", next("0 0 15,L * *", "2024-03-31T00:00"));
+        assertEquals("2024-04-30T00:00", next("0 0 15,L * *", "2024-04-15T00:00"));
+    }
+
+    @Test
+    void wrapAroundRange() {
+        var expression = "0 22-2 * * *";
+        assertEquals("2024-01-01T22:00", next(expression, "2024-01-01T03:00"));
+        assertEquals("2024-01-01T23:00", next(expression, "2024-01-01T22:00"));
+        assertEquals("2024-01-02T00:00", next(expression, "2024-01-01T23:00"));
+        assertEquals("2024-01-02T02:00", next(expression, "2024-01-02T01:00"));
+        assertEquals("2024-01-02T22:00", next(expression, "2024-01-02T02:00"));
+        // 2024-01-02 是周二, fri-mon 跨越周六
+        assertEquals("2024-01-05T00:00", next("0 0 * * fri-mon", "2024-01-02T00:00"));
+        assertEquals("2024-01-08T00:00", next("0 0 * * fri-mon", "2024-01-07T00:00"));
+        assertEquals("2024-11-01T00:00", next("0 0 1 nov-feb *", "2024-03-01T00:00"));
+        assertEquals("2025-01-01T00:00", next("0 0 1 nov-feb *", "2024-12-01T00:00"));
+        assertEquals("2025-11-01T00:00", next("0 0 1 nov-feb *", "2025-02-01T00:00"));
+    }
+
+    @Test
+    void sevenIsSunday() {
+        // 2024-01-07 是周日
+        assertEquals("2024-01-07T00:00", next("0 0 * * 7", "2024-01-02T00:00"));
+        assertEquals("2024-01-07T00:00", next("0 0 * * 0", "2024-01-02T00:00"));
+        assertEquals("2024-01-07T00:00", next("0 0 * * sun", "2024-01-02T00:00"));
+        assertEquals("2024-01-05T00:00", next("0 0 * * 5-7", "2024-01-02T00:00"));
+        assertEquals("2024-01-08T00:00", next("0 0 * * 1,7", "2024-01-07T00:00"));
+    }
+
+    @Test
+    void dayOfMonthAndDayOfWeekMustBothMatch() {
+        // 与 cron4j 一致, 13 日且为周五
+        assertEquals("2024-09-13T00:00", next("0 0 13 * fri", "2024-01-01T00:00"));
+        assertEquals("2024-12-13T00:00", next("0 0 13 * 5", "2024-09-13T00:00"));
+    }
+
+    @Test
+    void alternatives() {
+        assertEquals("2024-01-01T06:00", next("0 12 * * * | 0 6 * * *", "2024-01-01T00:00"));
+        assertEquals("2024-01-01T12:00", next("0 12 * * * | 0 6 * * *", "2024-01-01T06:00"));
+    }
+
+    @Test
+    void neverFires() {
+        assertNull(next("0 0 31 2 *", "2024-01-01T00:00"));
+        assertNull(next("0 0 30 feb *", "2024-01-01T00:00"));
+    }
+
+    @Test
+    void invalidExpression() {
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.compile(""));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.compile("* * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.compile("60 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.compile("*/0 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronExpression.compile("0 0 * * foo"));
+    }
+}
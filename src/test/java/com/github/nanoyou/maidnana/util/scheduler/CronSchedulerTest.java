@@ -0,0 +1,85 @@
+package com.github.nanoyou.maidnana.util.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 只测试调度状态, 不启动调度线程
+ */
+class CronSchedulerTest {
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Test
+    void earliestFireFirst() {
+        var scheduler = new CronScheduler(Runnable::run);
+        var now = System.currentTimeMillis();
+        var yearly = CronExpression.compile("0 0 1 1 *");
+        var daily = CronExpression.compile("0 0 * * *");
+        var yearlyID = scheduler.schedule(yearly, () -> {
+        });
+        assertEquals(yearly.next(now, ZONE), scheduler.getNextFire());
+        var dailyID = scheduler.schedule(daily, () -> {
+        });
+        assertEquals(daily.next(now, ZONE), scheduler.getNextFire());
+        assertEquals(2, scheduler.size());
+
+        scheduler.deschedule(dailyID);
+        assertEquals(1, scheduler.size());
+        assertEquals(yearly.next(now, ZONE), scheduler.getNextFire());
+        scheduler.deschedule(yearlyID);
+        assertEquals(0, scheduler.size());
+        assertEquals(-1, scheduler.getNextFire());
+    }
+
+    @Test
+    void neverFiringTaskIsKeptOutOfHeap() {
+        var scheduler = new CronScheduler(Runnable::run);
+        var id = scheduler.schedule(CronExpression.compile("0 0 31 2 *"), () -> {
+        });
+        assertEquals(1, scheduler.size());
+        assertEquals(-1, scheduler.getNextFire());
+        scheduler.deschedule(id);
+        assertEquals(0, scheduler.size());
+        // 重复取消无影响
+        scheduler.deschedule(id);
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    void heapOrderWithManyCancellations() {
+        var scheduler = new CronScheduler(Runnable::run);
+        var now = System.currentTimeMillis();
+        // 每个任务在一年中的不同日期触发
+        var tasks = new ArrayList<String[]>();
+        for (int month = 1; month <= 12; month++) {
+            for (int day = 1; day <= 28; day += 3) {
+                tasks.add(new String[]{"0 0 " + day + " " + month + " *", null});
+            }
+        }
+        Collections.shuffle(tasks, new Random(1));
+        for (var task : tasks) {
+            task[1] = scheduler.schedule(CronExpression.compile(task[0]), () -> {
+            });
+        }
+        assertEquals(tasks.size(), scheduler.size());
+
+        // 按随机顺序取消, 超过一半后会重建堆, 最早的触发时间始终正确
+        var remaining = new ArrayList<>(tasks);
+        while (!remaining.isEmpty()) {
+            long expected = Long.MAX_VALUE;
+            for (var task : remaining) {
+                expected = Math.min(expected, CronExpression.compile(task[0]).next(now, ZONE));
+            }
+            assertEquals(expected, scheduler.getNextFire());
+            scheduler.deschedule(remaining.remove(remaining.size() - 1)[1]);
+            assertEquals(remaining.size(), scheduler.size());
+        }
+        assertEquals(-1, scheduler.getNextFire());
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.nanoyou.maidnana.util.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledTemplateTest {
+    /**
+     * 编译前的渲染方式, 逐个变量正则替换, 最后删除剩余的变量
+     */
+    private static String baseline(String body, Map<String, String> var) {
+        for (var entry : var.entrySet()) {
+            body = body.replaceAll("\\$" + entry.getKey() + "\\$", entry.getValue());
+        }
+        return body.replaceAll("\\$.+\\$", "");
+    }
+
+    private static void assertSameAsBaseline(String body, Map<String, String> var) {
+        assertEquals(baseline(body, var), CompiledTemplate.compile(body).render(var), body);
+    }
+
+    @Test
+    void matchesBaseline() {
+        assertSameAsBaseline("没有变量", Map.of());
+        assertSameAsBaseline("你好, $name$!", Map.of("name", "小明"));
+        assertSameAsBaseline("$a$$b$", Map.of("a", "1", "b", "2"));
+        assertSameAsBaseline("$a$ 与 $a$", Map.of("a", "x"));
+        assertSameAsBaseline("第一行 $a$\n第二行 $b$", Map.of("a", "1", "b", "2"));
+        assertSameAsBaseline("价格 5$", Map.of());
+        assertSameAsBaseline("价格 5$\n共 $n$ 件", Map.of("n", "3"));
+        // 未赋值的变量替换为空
+        assertSameAsBaseline("a $x$ b", Map.of());
+        assertSameAsBaseline("a $x$ b $y$", Map.of("y", "1"));
+    }
+
+    @Test
+    void nullVariables() {
+        assertEquals("a  b", CompiledTemplate.compile("a $x$ b").render(null));
+        assertEquals("纯文本", CompiledTemplate.compile("纯文本").render(null));
+    }
+
+    @Test
+    void dollarInValueIsLiteral() {
+        var template = CompiledTemplate.compile("价格: $price$, 备注: $note$");
+        var var = new HashMap<String, String>();
+        var.put("price", "$5");
+        var.put("note", "$price$ \\1");
+        // 正则替换会把 $5 当作分组引用, 编译后的模板原样写入, 也不会再次替换
+        assertEquals("价格: $5, 备注: $price$ \\1", template.render(var));
+    }
+
+    @Test
+    void unterminatedSlotIsLiteral() {
+        assertEquals("$a\n$", CompiledTemplate.compile("$a\n$").render(Map.of("a", "x")));
+        assertEquals("x $", CompiledTemplate.compile("$a$ $").render(Map.of("a", "x")));
+        assertEquals("$$", CompiledTemplate.compile("$$").render(Map.of()));
+    }
+
+    @Test
+    void variables() {
+        var template = CompiledTemplate.compile("$a$ $b$ $a$");
+        assertEquals(List.of("a", "b", "a"), template.getVariables());
+        assertEquals("$a$ $b$ $a$", template.getSource());
+        assertTrue(CompiledTemplate.compile("没有变量").getVariables().isEmpty());
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.nanoyou.maidnana.util.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCacheTest {
+    private final UUID templateID = UUID.randomUUID();
+    private final CompiledTemplate template = CompiledTemplate.compile("$v$");
+    private final AtomicInteger renders = new AtomicInteger();
+
+    private String get(RenderCache cache, String value) {
+        var var = Map.of("v", value);
+        return cache.get(templateID, template, var, () -> {
+            renders.incrementAndGet();
+            return template.render(var);
+        });
+    }
+
+    @Test
+    void hitAndMiss() {
+        var cache = new RenderCache(10, 100);
+        assertEquals("a", get(cache, "a"));
+        assertEquals("a", get(cache, "a"));
+        assertEquals(1, renders.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() {
+        var cache = new RenderCache(2, 100);
+        get(cache, "a");
+        get(cache, "b");
+        // a 被访问过, 放入 c 时淘汰 b
+        get(cache, "a");
+        get(cache, "c");
+        assertEquals(2, cache.size());
+        renders.set(0);
+        get(cache, "a");
+        get(cache, "c");
+        assertEquals(0, renders.get());
+        get(cache, "b");
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    void charCapEvicts() {
+        var cache = new RenderCache(100, 10);
+        get(cache, "aaaa");
+        get(cache, "bbbb");
+        assertEquals(8, cache.getChars());
+        get(cache, "cccc");
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.getChars());
+        renders.set(0);
+        get(cache, "aaaa");
+        assertEquals(1, renders.get());
+        assertTrue(cache.getChars() <= 10);
+    }
+
+    @Test
+    void oversizedResultIsNotCached() {
+        var cache = new RenderCache(100, 3);
+        assertEquals("aaaa", get(cache, "aaaa"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getChars());
+    }
+
+    @Test
+    void invalidateRemovesTemplate() {
+        var cache = new RenderCache(100, 100);
+        get(cache, "a");
+        get(cache, "bb");
+        var other = UUID.randomUUID();
+        cache.get(other, template, Map.of(), () -> "ccc");
+        cache.invalidate(templateID);
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.getChars());
+        cache.invalidate(templateID);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void recompiledTemplateMisses() {
+        var cache = new RenderCache(100, 100);
+        get(cache, "a");
+        var recompiled = CompiledTemplate.compile(template.getSource());
+        cache.get(templateID, recompiled, Map.of("v", "a"), () -> {
+            renders.incrementAndGet();
+            return "a";
+        });
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void variablesAreCopied() {
+        var cache = new RenderCache(100, 100);
+        var var = new HashMap<String, String>();
+        var.put("v", "a");
+        cache.get(templateID, template, var, () -> template.render(var));
+        var.put("v", "b");
+        assertEquals("b", cache.get(templateID, template, var, () -> template.render(var)));
+        assertEquals(2, cache.size());
+    }
+}